@@ -0,0 +1,51 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package android.os;
+
+/**
+ * Shadows the framework class for the benchmarks, whose version is native and only works on a
+ * device. Both clocks count from the start of the JVM here.
+ */
+public final class SystemClock {
+
+    private static final long START = System.nanoTime();
+
+    private SystemClock() {
+    }
+
+    public static long elapsedRealtime() {
+        return (System.nanoTime() - START) / 1000000;
+    }
+
+    public static long elapsedRealtimeNanos() {
+        return System.nanoTime() - START;
+    }
+
+    public static long uptimeMillis() {
+        return elapsedRealtime();
+    }
+
+    public static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaArgs;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole browser lifecycles through the plugin's execute(), on headless engines: open a page,
+ * subscribe to its events, follow a link that redirects, follow one that can't be reached,
+ * and close, with every engine thread task run in between.
+ *
+ * Reports cycles per second, and the events delivered to the JavaScript side per second as the
+ * "events" counter. Add -prof gc to jmh.args for the allocation per cycle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrowserCycleBenchmark {
+
+    private static final String HOME = "http://local.test/";
+    private static final String OLD = "http://local.test/old";
+    private static final String NEXT = "http://local.test/next";
+    private static final String MISSING = "http://unreachable.test/";
+    private static final String[] SUBSCRIBED = { "loadstart", "loadstop", "loaderror", "exit", "resourcetiming" };
+
+    /**
+     * Open options, with or without the resourcetiming summary on each load
+     */
+    @Param({ "", "resourcetiming=yes" })
+    public String features;
+
+    /**
+     * Counts what the plugin sends back, per iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Events {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+        }
+    }
+
+    private static class Counting extends CallbackContext {
+        Events counter;
+
+        Counting() {
+            super("InAppBrowserBeta1234567890", null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            counter.events++;
+        }
+    }
+
+    private final Counting callback = new Counting();
+    private final EngineThread thread = new EngineThread();
+    private InAppBrowserBeta plugin;
+    private HeadlessEngine engine;
+    private int cycle;
+
+    @Setup
+    public void setUp() {
+        final LocalSite site = new LocalSite()
+                .page(HOME, "http://local.test/app.js", "http://local.test/app.css", "http://cdn.local.test/logo.png")
+                .redirect(OLD, NEXT)
+                .page(NEXT, "http://local.test/app.js", "http://cdn.local.test/photo.jpg");
+        plugin = new InAppBrowserBeta();
+        plugin.setHeadlessEngines(new BrowserEngine.Factory() {
+            @Override
+            public BrowserEngine create() {
+                engine = new HeadlessEngine(site, thread);
+                return engine;
+            }
+        }, thread);
+    }
+
+    private void execute(String action, Object... args) throws JSONException {
+        JSONArray json = new JSONArray();
+        for (Object arg : args) {
+            json.put(arg);
+        }
+        plugin.execute(action, new CordovaArgs(json), callback);
+    }
+
+    @Benchmark
+    public int openNavigateClose(Events events) throws JSONException {
+        callback.counter = events;
+        String id = "cycle" + (cycle++ & 1023);
+        execute("open", HOME, "_blank", features, id, null);
+        for (String type : SUBSCRIBED) {
+            execute("subscribe", type, id);
+        }
+        thread.drain();
+        engine.click(OLD);
+        thread.drain();
+        engine.click(MISSING);
+        thread.drain();
+        execute("close", id);
+        thread.drain();
+        return engine.getScriptCount();
+    }
+}
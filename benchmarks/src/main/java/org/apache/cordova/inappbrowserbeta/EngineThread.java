@@ -0,0 +1,107 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Stands in for the UI thread of headless engines: tasks are queued, and run in order by
+ * whoever calls drain(), the benchmark thread. Delayed tasks run on a clock of their own,
+ * moved on by advance(). Not thread-safe.
+ */
+public class EngineThread implements Executor, InAppBrowserBeta.Scheduler {
+
+    private static class Delayed {
+        final Runnable task;
+        final long at;
+
+        Delayed(Runnable task, long at) {
+            this.task = task;
+            this.at = at;
+        }
+    }
+
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+    // In the order they were posted
+    private final ArrayList<Delayed> delayed = new ArrayList<Delayed>();
+    private long now = 0;
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Run everything queued, including what the tasks queue as they run
+     *
+     * @return the number of tasks run
+     */
+    public int drain() {
+        int count = 0;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        delayed.add(new Delayed(task, now + Math.max(0, delayMillis)));
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        for (int i = delayed.size() - 1; i >= 0; i--) {
+            if (delayed.get(i).task == task) {
+                delayed.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Move the clock on, running the delayed tasks that come due in the order they do, each
+     * with what it queues
+     *
+     * @param millis how far
+     */
+    public void advance(long millis) {
+        long until = now + millis;
+        drain();
+        while (true) {
+            Delayed next = null;
+            for (Delayed candidate : delayed) {
+                if (candidate.at <= until && (next == null || candidate.at < next.at)) {
+                    next = candidate;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            delayed.remove(next);
+            now = next.at;
+            next.task.run();
+            drain();
+        }
+        now = until;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.webkit.ValueCallback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A BrowserEngine without a WebView, loading pages from a LocalSite. Scripts aren't run, they
+ * are only counted and evaluate to null.
+ *
+ * Loads happen on the engine thread after loadUrl() returns, as with a WebView: server
+ * redirects go through shouldOverrideUrlLoading(), then the page starts, its subresources are
+ * requested and it finishes. Unreachable pages report an error before finishing.
+ */
+public class HeadlessEngine implements BrowserEngine {
+
+    // WebViewClient.ERROR_HOST_LOOKUP
+    static final int ERROR_HOST_LOOKUP = -2;
+    private static final int MAX_REDIRECTS = 20;
+    private static final String BLANK = "about:blank";
+
+    private final LocalSite site;
+    private final Executor thread;
+    private final ArrayList<String> history = new ArrayList<String>();
+    private final HashMap<String, Object> interfaces = new HashMap<String, Object>();
+    private Client client;
+    private int current = -1;
+    private int scripts;
+    private String lastScript;
+    private boolean paused;
+    private boolean destroyed;
+
+    /**
+     * @param site      where pages come from
+     * @param thread    the engine thread, see InAppBrowserBeta.setHeadlessEngines()
+     */
+    public HeadlessEngine(LocalSite site, Executor thread) {
+        this.site = site;
+        this.thread = thread;
+    }
+
+    /**
+     * A link on the page was followed
+     */
+    public void click(final String url) {
+        thread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (client == null || !client.shouldOverrideUrlLoading(HeadlessEngine.this, url)) {
+                    load(url, true);
+                }
+            }
+        });
+    }
+
+    /**
+     * The renderer went away, as WebViewClient.onRenderProcessGone() reports it. A client that
+     * doesn't deal with it would take the app down, that fails with an IllegalStateException.
+     *
+     * @param crashed   true for a crash, false if the system killed the renderer for memory
+     */
+    public void killRenderer(final boolean crashed) {
+        thread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (client == null || !client.onRenderProcessGone(HeadlessEngine.this, crashed)) {
+                    throw new IllegalStateException("Renderer gone and not handled");
+                }
+            }
+        });
+    }
+
+    private void navigate(final String url, final boolean push) {
+        thread.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(url, push);
+            }
+        });
+    }
+
+    private void load(String url, boolean push) {
+        if (destroyed) {
+            return;
+        }
+        LocalSite.Response response = BLANK.equals(url) ? new LocalSite.Response(null, new String[0]) : site.get(url);
+        for (int i = 0; response != null && response.location != null; i++) {
+            if (i == MAX_REDIRECTS || (client != null && client.shouldOverrideUrlLoading(this, response.location))) {
+                return;
+            }
+            url = response.location;
+            response = site.get(url);
+        }
+        if (push) {
+            while (history.size() > current + 1) {
+                history.remove(history.size() - 1);
+            }
+            history.add(url);
+            current++;
+        }
+        if (client == null) {
+            return;
+        }
+        client.onPageStarted(this, url);
+        if (response == null) {
+            client.onReceivedError(this, ERROR_HOST_LOOKUP, "net::ERR_NAME_NOT_RESOLVED", url);
+        } else {
+            for (String resource : response.resources) {
+                client.onResourceRequest(this, resource);
+            }
+        }
+        client.onPageFinished(this, url);
+    }
+
+    @Override
+    public void setClient(Client client) {
+        this.client = client;
+    }
+
+    @Override
+    public void loadUrl(String url) {
+        navigate(url, true);
+    }
+
+    @Override
+    public String getUrl() {
+        return current < 0 ? null : history.get(current);
+    }
+
+    @Override
+    public void stopLoading() {
+    }
+
+    @Override
+    public boolean canGoBack() {
+        return current > 0;
+    }
+
+    @Override
+    public void goBack() {
+        if (canGoBack()) {
+            current--;
+            navigate(history.get(current), false);
+        }
+    }
+
+    @Override
+    public boolean canGoForward() {
+        return current < history.size() - 1;
+    }
+
+    @Override
+    public void goForward() {
+        if (canGoForward()) {
+            current++;
+            navigate(history.get(current), false);
+        }
+    }
+
+    @Override
+    public void clearHistory() {
+        String url = getUrl();
+        history.clear();
+        current = -1;
+        if (url != null) {
+            history.add(url);
+            current = 0;
+        }
+    }
+
+    @Override
+    public void clearCache(boolean includeDiskFiles) {
+    }
+
+    @Override
+    public void evaluateJavascript(String script, final ValueCallback<String> callback) {
+        scripts++;
+        lastScript = script;
+        if (callback != null) {
+            thread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onReceiveValue("null");
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the number of scripts evaluated so far
+     */
+    public int getScriptCount() {
+        return scripts;
+    }
+
+    /**
+     * @return the script evaluated last, null if there was none
+     */
+    public String getLastScript() {
+        return lastScript;
+    }
+
+    @Override
+    public void addJavascriptInterface(Object object, String name) {
+        interfaces.put(name, object);
+    }
+
+    @Override
+    public void removeJavascriptInterface(String name) {
+        interfaces.remove(name);
+    }
+
+    /**
+     * @return the object bound as window.&lt;name&gt;, for calling it the way the page would
+     */
+    public Object getJavascriptInterface(String name) {
+        return interfaces.get(name);
+    }
+
+    @Override
+    public void onPause() {
+        paused = true;
+    }
+
+    @Override
+    public void onResume() {
+        paused = false;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        client = null;
+        interfaces.clear();
+    }
+
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escaping and wrapping the source of the inject* actions, and escaping alone. The baseline*
+ * benchmarks do the same the way
+ * injectDeferredObject() used to, formatting the wrapper and escaping the source through a
+ * JSONArray, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionTemplateBenchmark {
+
+    private static final String CALLBACK_ID = "InAppBrowserBeta1234567890";
+    private static final String BASELINE_SCRIPT_WRAPPER = "prompt(JSON.stringify([eval(%%s)]), 'gap-iab://%s')";
+    private static final String BASELINE_STYLE_WRAPPER = "(function(d) { var c = d.createElement('style'); c.innerHTML = %s; d.body.appendChild(c); })(document)";
+
+    // A line of typical injected code, with quotes and a newline to escape
+    private static final String LINE = "document.querySelector(\"#login\").setAttribute('data-state', \"ready\");\n";
+
+    @Param({ "64", "4096", "131072" })
+    public int length;
+
+    private String source;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(length + LINE.length());
+        while (sb.length() < length) {
+            sb.append(LINE);
+        }
+        sb.setLength(length);
+        source = sb.toString();
+    }
+
+    @Benchmark
+    public String renderScriptWithCallback() {
+        return InjectionTemplate.SCRIPT_CODE_WITH_CALLBACK.render(source, CALLBACK_ID);
+    }
+
+    @Benchmark
+    public String renderStyle() {
+        return InjectionTemplate.STYLE_CODE.render(source, null);
+    }
+
+    @Benchmark
+    public String quote() {
+        return InjectionTemplate.quote(source);
+    }
+
+    @Benchmark
+    public String baselineRenderScriptWithCallback() {
+        return String.format(String.format(BASELINE_SCRIPT_WRAPPER, CALLBACK_ID), baselineQuote(source));
+    }
+
+    @Benchmark
+    public String baselineRenderStyle() {
+        return String.format(BASELINE_STYLE_WRAPPER, baselineQuote(source));
+    }
+
+    @Benchmark
+    public String baselineQuote() {
+        return baselineQuote(source);
+    }
+
+    private static String baselineQuote(String source) {
+        JSONArray jsonEsc = new JSONArray();
+        jsonEsc.put(source);
+        String jsonRepr = jsonEsc.toString();
+        return jsonRepr.substring(1, jsonRepr.length() - 1);
+    }
+}
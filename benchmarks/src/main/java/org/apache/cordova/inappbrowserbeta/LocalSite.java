@@ -0,0 +1,67 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import java.util.HashMap;
+
+/**
+ * An in-memory web site for HeadlessEngine: pages with their subresources, and redirects.
+ * Any other URL is unreachable.
+ */
+public class LocalSite {
+
+    static class Response {
+        // Set for redirects
+        final String location;
+        final String[] resources;
+
+        Response(String location, String[] resources) {
+            this.location = location;
+            this.resources = resources;
+        }
+    }
+
+    private final HashMap<String, Response> responses = new HashMap<String, Response>();
+
+    /**
+     * Serve a page
+     *
+     * @param url       the page
+     * @param resources the subresources it loads
+     */
+    public LocalSite page(String url, String... resources) {
+        responses.put(url, new Response(null, resources));
+        return this;
+    }
+
+    /**
+     * Redirect one URL to another
+     */
+    public LocalSite redirect(String url, String location) {
+        responses.put(url, new Response(location, new String[0]));
+        return this;
+    }
+
+    /**
+     * @return what the site answers for the URL, null if it can't be reached
+     */
+    Response get(String url) {
+        return responses.get(url);
+    }
+}
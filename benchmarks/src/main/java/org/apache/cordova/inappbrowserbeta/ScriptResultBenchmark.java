@@ -0,0 +1,77 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.apache.cordova.PluginResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the results that executeScript() sends back through prompt(), see
+ * InAppChromeClientBeta.onJsPrompt().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptResultBenchmark {
+
+    @Param({ "0", "1", "100" })
+    public int rows;
+
+    private String message;
+
+    @Setup
+    public void setUp() {
+        if (rows == 0) {
+            message = "";
+            return;
+        }
+        StringBuilder sb = new StringBuilder("[[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i)
+              .append(",\"title\":\"Thread \\\"").append(i).append("\\\" \\u00e9t\\u00e9\"")
+              .append(",\"href\":\"https:\\/\\/www.example.com\\/forums\\/thread\\/").append(i).append("\"")
+              .append(",\"unread\":").append(i % 2 == 0)
+              .append('}');
+        }
+        message = sb.append("]]").toString();
+    }
+
+    @Benchmark
+    public PluginResult parseScriptResult() {
+        return InAppChromeClientBeta.parseScriptResult(message);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a loadstop event and sending it through the browser's EventChannel, as
+ * onPageFinished() does, up to the PluginResult handed to the callback.
+ *
+ * Batched delivery needs a Looper, so only direct delivery is measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendUpdateBenchmark {
+
+    private static final String URL = "https://www.example.com/forums/thread/12345?page=2&sort=newest#post-678";
+
+    /**
+     * Keeps the last result, so that sending it can't be optimized away
+     */
+    static class LastResult extends CallbackContext {
+        volatile PluginResult last;
+
+        LastResult() {
+            super("InAppBrowserBeta1234567890", null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            last = pluginResult;
+        }
+    }
+
+    private InAppBrowserBeta.BrowserInstance subscribed;
+    private InAppBrowserBeta.BrowserInstance unsubscribed;
+    private LastResult callback;
+
+    @Setup
+    public void setUp() {
+        InAppBrowserBeta plugin = new InAppBrowserBeta();
+        callback = new LastResult();
+        subscribed = plugin.new BrowserInstance("subscribed");
+        subscribed.events.open(callback);
+        subscribed.events.setSubscribed("loadstop", true);
+        unsubscribed = plugin.new BrowserInstance("unsubscribed");
+        unsubscribed.events.open(new LastResult());
+    }
+
+    private static JSONObject loadStop() throws JSONException {
+        JSONObject obj = new JSONObject();
+        obj.put("type", "loadstop");
+        obj.put("url", URL);
+        obj.put("loadTime", 1234L);
+        obj.put("openTime", 2345L);
+        return obj;
+    }
+
+    @Benchmark
+    public PluginResult loadStopSent() throws JSONException {
+        if (subscribed.events.wants("loadstop")) {
+            subscribed.sendUpdate(loadStop(), true);
+        }
+        return callback.last;
+    }
+
+    @Benchmark
+    public boolean loadStopSkipped() throws JSONException {
+        if (unsubscribed.events.wants("loadstop")) {
+            unsubscribed.sendUpdate(loadStop(), true);
+            return true;
+        }
+        return false;
+    }
+}
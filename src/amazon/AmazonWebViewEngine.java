@@ -0,0 +1,161 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.graphics.Bitmap;
+import android.webkit.ValueCallback;
+
+import com.amazon.android.webkit.AmazonWebView;
+import com.amazon.android.webkit.AmazonWebViewClient;
+
+/**
+ * The BrowserEngine of Amazon WebView devices. Everything here must be called on the UI thread.
+ *
+ * Scripts run through javascript: URLs, so evaluateJavascript() never calls back, and
+ * subresource requests aren't reported to onResourceRequest().
+ */
+public class AmazonWebViewEngine implements BrowserEngine {
+
+    private final AmazonWebView view;
+
+    /**
+     * @param view the AmazonWebView, configured already
+     */
+    public AmazonWebViewEngine(AmazonWebView view) {
+        this.view = view;
+    }
+
+    /**
+     * @return the AmazonWebView, to lay out and focus
+     */
+    public AmazonWebView getView() {
+        return view;
+    }
+
+    /**
+     * Hands the AmazonWebViewClient callbacks over to a Client
+     */
+    private class Adapter extends AmazonWebViewClient {
+        private final Client client;
+
+        Adapter(Client client) {
+            this.client = client;
+        }
+
+        @Override
+        public boolean shouldOverrideUrlLoading(AmazonWebView view, String url) {
+            return client.shouldOverrideUrlLoading(AmazonWebViewEngine.this, url);
+        }
+
+        @Override
+        public void onPageStarted(AmazonWebView view, String url, Bitmap favicon) {
+            client.onPageStarted(AmazonWebViewEngine.this, url);
+        }
+
+        @Override
+        public void onPageFinished(AmazonWebView view, String url) {
+            client.onPageFinished(AmazonWebViewEngine.this, url);
+        }
+
+        @Override
+        public void onReceivedError(AmazonWebView view, int errorCode, String description, String failingUrl) {
+            client.onReceivedError(AmazonWebViewEngine.this, errorCode, description, failingUrl);
+        }
+    }
+
+    @Override
+    public void setClient(Client client) {
+        view.setWebViewClient(client == null ? new AmazonWebViewClient() : new Adapter(client));
+    }
+
+    @Override
+    public void loadUrl(String url) {
+        view.loadUrl(url);
+    }
+
+    @Override
+    public String getUrl() {
+        return view.getUrl();
+    }
+
+    @Override
+    public void stopLoading() {
+        view.stopLoading();
+    }
+
+    @Override
+    public boolean canGoBack() {
+        return view.canGoBack();
+    }
+
+    @Override
+    public void goBack() {
+        view.goBack();
+    }
+
+    @Override
+    public boolean canGoForward() {
+        return view.canGoForward();
+    }
+
+    @Override
+    public void goForward() {
+        view.goForward();
+    }
+
+    @Override
+    public void clearHistory() {
+        view.clearHistory();
+    }
+
+    @Override
+    public void clearCache(boolean includeDiskFiles) {
+        view.clearCache(includeDiskFiles);
+    }
+
+    @Override
+    public void evaluateJavascript(String script, ValueCallback<String> callback) {
+        view.loadUrl("javascript:" + script);
+    }
+
+    @Override
+    public void addJavascriptInterface(Object object, String name) {
+        view.addJavascriptInterface(object, name);
+    }
+
+    @Override
+    public void removeJavascriptInterface(String name) {
+        view.removeJavascriptInterface(name);
+    }
+
+    @Override
+    public void onPause() {
+        view.onPause();
+    }
+
+    @Override
+    public void onResume() {
+        view.onResume();
+    }
+
+    @Override
+    public void destroy() {
+        view.destroy();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Where the time of each plugin action goes: on the plugin's worker thread, and in the tasks it
+ * posts to the UI thread, in microseconds. Only the UI thread part can drop frames.
+ *
+ * Recorded from both threads and read from the plugin thread, so it is lock-free like
+ * NavigationMetrics, whose histograms it uses.
+ */
+public class ActionTimings {
+
+    public static final int WORKER = 0;
+    public static final int UI = 1;
+
+    private static final String[] THREADS = { "worker", "ui" };
+
+    private final ConcurrentHashMap<String, NavigationMetrics.Histogram[]> actions = new ConcurrentHashMap<String, NavigationMetrics.Histogram[]>();
+
+    /**
+     * Count the time spent on one thread for an action
+     *
+     * @param action    the action, inject and wait actions are counted together
+     * @param thread    WORKER or UI
+     * @param nanos     the time spent, from System.nanoTime()
+     */
+    public void record(String action, int thread, long nanos) {
+        if (action.startsWith("inject")) {
+            action = "inject";
+        } else if (action.startsWith("waitFor") || action.equals("loadedStatus")) {
+            action = "wait";
+        }
+        NavigationMetrics.Histogram[] histograms = actions.get(action);
+        if (histograms == null) {
+            histograms = new NavigationMetrics.Histogram[THREADS.length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new NavigationMetrics.Histogram();
+            }
+            NavigationMetrics.Histogram[] raced = actions.putIfAbsent(action, histograms);
+            if (raced != null) {
+                histograms = raced;
+            }
+        }
+        histograms[thread].record(nanos / 1000);
+    }
+
+    /**
+     * @return { action: { worker: { count, mean, p50, p95, p99, max }, ui: {...} } }, in microseconds
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject result = new JSONObject();
+        for (Map.Entry<String, NavigationMetrics.Histogram[]> entry : actions.entrySet()) {
+            JSONObject action = new JSONObject();
+            NavigationMetrics.Histogram[] histograms = entry.getValue();
+            for (int i = 0; i < THREADS.length; i++) {
+                if (histograms[i].getCount() > 0) {
+                    action.put(THREADS[i], histograms[i].toJSON());
+                }
+            }
+            result.put(entry.getKey(), action);
+        }
+        return result;
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        actions.clear();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.webkit.ValueCallback;
+import android.webkit.WebResourceResponse;
+
+/**
+ * What a browser needs from the thing that actually loads its pages: loading, running scripts,
+ * the JavaScript bridge and the page lifecycle callbacks.
+ *
+ * On a device this is WebViewEngine, around an android.webkit.WebView. Off the device,
+ * InAppBrowserBeta.setHeadlessEngines() swaps in engines that don't need a WebView at all, so
+ * that the plugin's logic can be driven from a plain JVM.
+ *
+ * An engine is only used from the thread it belongs to, the UI thread for a WebView, and calls
+ * its Client on that thread too, except for onResourceRequest().
+ */
+public interface BrowserEngine {
+
+    /**
+     * Receives the page lifecycle of an engine. Does nothing by default.
+     */
+    abstract class Client {
+        /**
+         * @return true if the engine shouldn't load the url
+         */
+        public boolean shouldOverrideUrlLoading(BrowserEngine engine, String url) {
+            return false;
+        }
+
+        public void onPageStarted(BrowserEngine engine, String url) {
+        }
+
+        public void onPageFinished(BrowserEngine engine, String url) {
+        }
+
+        public void onReceivedError(BrowserEngine engine, int errorCode, String description, String failingUrl) {
+        }
+
+        /**
+         * A subresource is about to be requested, called on one of the engine's own threads
+         */
+        public void onResourceRequest(BrowserEngine engine, String url) {
+        }
+
+        /**
+         * Answer a GET request instead of the engine, called after onResourceRequest() on the
+         * same thread
+         *
+         * @return the response, or null for the engine to fetch the url itself
+         */
+        public WebResourceResponse interceptRequest(BrowserEngine engine, String url) {
+            return null;
+        }
+
+        /**
+         * The engine's renderer is gone, so the engine is dead: it can only be taken out of its
+         * layout and destroyed
+         *
+         * @param crashed   true if the renderer crashed, false if the system killed it for memory
+         * @return true if the engine was dealt with, false to let the app go down with it
+         */
+        public boolean onRenderProcessGone(BrowserEngine engine, boolean crashed) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes engines for the browsers, see InAppBrowserBeta.setHeadlessEngines()
+     */
+    interface Factory {
+        /**
+         * @return a new engine, called on the engines' thread
+         */
+        BrowserEngine create();
+    }
+
+    /**
+     * @param client receives the page lifecycle from now on, null for nothing
+     */
+    void setClient(Client client);
+
+    void loadUrl(String url);
+
+    /**
+     * @return the url of the current page, null if there is none
+     */
+    String getUrl();
+
+    void stopLoading();
+
+    boolean canGoBack();
+
+    void goBack();
+
+    boolean canGoForward();
+
+    void goForward();
+
+    void clearHistory();
+
+    /**
+     * @param includeDiskFiles false to only clear the in-memory cache
+     */
+    void clearCache(boolean includeDiskFiles);
+
+    /**
+     * Run a script in the current page
+     *
+     * @param script    the script
+     * @param callback  receives the JSON value of the script, may be null. Engines that can't
+     *                  return values (WebViews before KitKat) never call it.
+     */
+    void evaluateJavascript(String script, ValueCallback<String> callback);
+
+    /**
+     * Expose an object to the page as window.&lt;name&gt;, see JavascriptInterfaceRegistry
+     */
+    void addJavascriptInterface(Object object, String name);
+
+    void removeJavascriptInterface(String name);
+
+    /**
+     * The browser is no longer showing, stop animations and lower the engine's priority
+     */
+    void onPause();
+
+    void onResume();
+
+    /**
+     * Release the engine, it can't be used afterwards
+     */
+    void destroy();
+}
@@ -0,0 +1,330 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Saved browsers on disk, so that a browser opened with persist=yes comes back where it was
+ * after the activity or the process is gone: its page, history and scroll position, see
+ * PageState, and its open options.
+ *
+ * Snapshots are keyed by the URL the browser was opened with. One file each, named by the
+ * SHA-256 of that URL, at most MAX_SNAPSHOTS, the least recently written go first. A file starts
+ * with MAGIC and VERSION, files of other versions are deleted unread. Reading and writing happen
+ * on a thread of their own; the latest snapshot of a browser replaces one still waiting to be
+ * written.
+ */
+public class BrowserSnapshots {
+
+    private static final String LOG_TAG = "BrowserSnapshots";
+    private static final int MAGIC = 0x49414253;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".snapshot";
+    static final int MAX_SNAPSHOTS = 8;
+
+    /**
+     * One saved browser
+     */
+    public static class Snapshot {
+        final String openUrl;
+        final boolean hidden;
+        final JSONObject features;
+        final PageState page;
+
+        /**
+         * @param openUrl   the URL open() was called with, the key
+         * @param hidden    whether it was hidden
+         * @param features  its yes/no open options
+         * @param page      where it was
+         */
+        public Snapshot(String openUrl, boolean hidden, JSONObject features, PageState page) {
+            this.openUrl = openUrl;
+            this.hidden = hidden;
+            this.features = features;
+            this.page = page;
+        }
+
+        /**
+         * @param features  the options of this open(), which win over the saved ones
+         * @return the saved options, including hidden, with the given ones on top
+         */
+        HashMap<String, Boolean> mergeFeatures(HashMap<String, Boolean> features, String hiddenKey) {
+            HashMap<String, Boolean> merged = new HashMap<String, Boolean>();
+            Iterator<String> keys = this.features.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                merged.put(key, this.features.optBoolean(key));
+            }
+            merged.put(hiddenKey, hidden);
+            if (features != null) {
+                merged.putAll(features);
+            }
+            return merged;
+        }
+    }
+
+    private final File dir;
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final ConcurrentHashMap<String, Snapshot> loaded = new ConcurrentHashMap<String, Snapshot>();
+    // Written by the io thread, latest first, null to delete
+    private final LinkedHashMap<String, Snapshot> pending = new LinkedHashMap<String, Snapshot>();
+    private final Object deleted = new Object();
+
+    /**
+     * @param dir where the snapshots go, made if need be
+     */
+    public BrowserSnapshots(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Read every snapshot in the background, so that get() doesn't have to wait for the disk
+     */
+    public void preload() {
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = dir.listFiles();
+                if (files == null) {
+                    return;
+                }
+                for (File file : files) {
+                    if (!file.getName().endsWith(SUFFIX)) {
+                        continue;
+                    }
+                    Snapshot snapshot = read(file);
+                    if (snapshot != null) {
+                        loaded.putIfAbsent(snapshot.openUrl, snapshot);
+                    } else {
+                        // Of another version, or cut short
+                        file.delete();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @param openUrl the URL open() was called with
+     * @return its snapshot, or null. Reads the disk if preload() hasn't got to it, so not on the
+     *         UI thread.
+     */
+    public Snapshot get(String openUrl) {
+        Snapshot snapshot = loaded.get(openUrl);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (pending) {
+            if (pending.containsKey(openUrl)) {
+                return null;
+            }
+        }
+        snapshot = read(fileFor(openUrl));
+        return snapshot != null && snapshot.openUrl.equals(openUrl) ? snapshot : null;
+    }
+
+    /**
+     * Write a snapshot in the background, replacing the browser's last one
+     */
+    public void save(Snapshot snapshot) {
+        loaded.put(snapshot.openUrl, snapshot);
+        schedule(snapshot.openUrl, snapshot);
+    }
+
+    /**
+     * Forget a browser's snapshot, when it was closed for good
+     */
+    public void delete(String openUrl) {
+        loaded.remove(openUrl);
+        schedule(openUrl, null);
+    }
+
+    /**
+     * Let the queued writes finish, then stop
+     */
+    public void shutdown() {
+        io.shutdown();
+    }
+
+    private void schedule(String openUrl, Snapshot snapshot) {
+        boolean idle;
+        synchronized (pending) {
+            idle = pending.isEmpty();
+            pending.remove(openUrl);
+            pending.put(openUrl, snapshot);
+        }
+        if (idle) {
+            io.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            Map.Entry<String, Snapshot> next;
+            synchronized (pending) {
+                Iterator<Map.Entry<String, Snapshot>> it = pending.entrySet().iterator();
+                if (!it.hasNext()) {
+                    return;
+                }
+                next = it.next();
+                it.remove();
+            }
+            File file = fileFor(next.getKey());
+            if (next.getValue() == null) {
+                file.delete();
+            } else {
+                write(file, next.getValue());
+            }
+        }
+    }
+
+    File fileFor(String openUrl) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(openUrl.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return new File(dir, name.append(SUFFIX).toString());
+    }
+
+    private void write(File file, Snapshot snapshot) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.d(LOG_TAG, "Can't make " + dir);
+            return;
+        }
+        File temp = new File(dir, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            PageState.writeString(out, snapshot.openUrl);
+            out.writeBoolean(snapshot.hidden);
+            PageState.writeString(out, snapshot.features.toString());
+            snapshot.page.write(out);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                Log.d(LOG_TAG, "Can't write " + file);
+                temp.delete();
+                return;
+            }
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "Can't write " + file + ": " + e.toString());
+            temp.delete();
+            return;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // nothing more to do
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * @return the snapshot in the file, or null if it's missing or unreadable
+     */
+    private Snapshot read(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String openUrl = PageState.readString(in);
+            boolean hidden = in.readBoolean();
+            JSONObject features = new JSONObject(PageState.readString(in));
+            PageState page = PageState.read(in);
+            return new Snapshot(openUrl, hidden, features, page);
+        } catch (IOException e) {
+            // Missing, or cut short by the process dying
+            return null;
+        } catch (JSONException e) {
+            return null;
+        } catch (RuntimeException e) {
+            Log.d(LOG_TAG, "Unreadable " + file + ": " + e.toString());
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= MAX_SNAPSHOTS) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = b.lastModified() - a.lastModified();
+                return diff > 0 ? 1 : diff < 0 ? -1 : 0;
+            }
+        });
+        for (int i = MAX_SNAPSHOTS; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+}
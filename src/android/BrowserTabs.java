@@ -0,0 +1,314 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.webkit.WebBackForwardList;
+import android.webkit.WebHistoryItem;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+
+/**
+ * The tabs of a browser, each with a WebView of its own.
+ *
+ * A tab's WebView is only built the first time the tab is selected. Switching tabs just swaps
+ * which WebView is visible, the others keep their page and are paused in the background.
+ * When more than the limit of WebViews are alive, the least recently selected tab gives its
+ * WebView up: its state is saved and restored when it is selected again.
+ *
+ * Everything here touches WebViews, so it must be used on the UI thread.
+ */
+public class BrowserTabs {
+
+    private static final String LOG_TAG = "BrowserTabs";
+
+    /**
+     * Supplies and takes back the WebViews of the tabs. Called on the UI thread.
+     */
+    public interface Host {
+        /**
+         * @param index the tab the WebView is for
+         * @return a configured WebView, added hidden or shown to the layout the tabs are in
+         */
+        WebViewEngine createView(int index);
+
+        /**
+         * Undo anything done to the WebView by createView(), taking it out of the layout too.
+         * It is destroyed right after.
+         */
+        void releaseView(int index, WebViewEngine view);
+    }
+
+    static class Tab {
+        final String title;
+        final String url;
+        WebViewEngine view;
+        // Restored when the WebView is built again
+        Bundle state;
+        // Of a tab whose renderer was lost, the page to end up on
+        String recoveredUrl;
+        // Of the live WebView, see saveState()
+        Bundle savedState;
+        long lastSelected;
+
+        Tab(String title, String url) {
+            this.title = title;
+            this.url = url;
+        }
+    }
+
+    private final Host host;
+    private final ArrayList<Tab> tabs;
+    private final int limit;
+    private int selected = -1;
+    private long selections = 0;
+
+    /**
+     * @param host      builds and releases the tab WebViews, and lays them out
+     * @param tabs      the tabs, see parse()
+     * @param limit     how many tab WebViews may be alive at once, at least 1
+     */
+    public BrowserTabs(Host host, ArrayList<Tab> tabs, int limit) {
+        this.host = host;
+        this.tabs = tabs;
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Read the tabs option of open(). Each entry is either a title, or an object with a
+     * title and the url the tab opens on. A tab without a url has no WebView of its own.
+     *
+     * @param config the tabs option
+     * @return the tabs, empty if there are none
+     */
+    public static ArrayList<Tab> parse(JSONArray config) {
+        ArrayList<Tab> tabs = new ArrayList<Tab>();
+        if (config == null) {
+            return tabs;
+        }
+        for (int i = 0; i < config.length(); i++) {
+            JSONObject item = config.optJSONObject(i);
+            if (item == null) {
+                tabs.add(new Tab(config.optString(i), null));
+            } else {
+                String url = item.optString("url", null);
+                tabs.add(new Tab(item.optString("title"), url == null || url.length() == 0 ? null : url));
+            }
+        }
+        return tabs;
+    }
+
+    public int size() {
+        return tabs.size();
+    }
+
+    public String getTitle(int index) {
+        return tabs.get(index).title;
+    }
+
+    public int getSelected() {
+        return selected;
+    }
+
+    /**
+     * Show a tab, building its WebView if it has none
+     *
+     * @param index         the tab
+     * @param initialUrl    the url to load instead of the tab's own, if the WebView is new
+     * @return the tab's WebView, or null if the tab has no url to show, in which case
+     *         the selected tab doesn't change
+     */
+    public WebViewEngine select(int index, String initialUrl) {
+        Tab tab = tabs.get(index);
+        if (index == selected) {
+            return tab.view;
+        }
+        if (tab.view == null && tab.state == null && tab.recoveredUrl == null && tab.url == null && initialUrl == null) {
+            return null;
+        }
+
+        if (selected >= 0) {
+            Tab previous = tabs.get(selected);
+            if (previous.view != null) {
+                previous.view.setVisible(false);
+                previous.view.onPause();
+            }
+        }
+
+        if (tab.view == null) {
+            tab.view = host.createView(index);
+            if (tab.recoveredUrl != null) {
+                restore(tab.view, tab.state, tab.recoveredUrl);
+            } else if (tab.state == null || tab.view.restoreState(tab.state) == null) {
+                tab.view.loadUrl(initialUrl != null ? initialUrl : tab.url);
+            }
+            tab.state = null;
+            tab.recoveredUrl = null;
+        } else {
+            tab.view.onResume();
+            tab.view.setVisible(true);
+        }
+        tab.lastSelected = ++selections;
+        selected = index;
+        evict();
+        return tab.view;
+    }
+
+    /**
+     * Give up WebViews, least recently selected first, until no more than the limit are alive
+     */
+    private void evict() {
+        int alive = 0;
+        for (Tab tab : tabs) {
+            if (tab.view != null) {
+                alive++;
+            }
+        }
+        while (alive > limit) {
+            int oldest = -1;
+            for (int i = 0; i < tabs.size(); i++) {
+                Tab tab = tabs.get(i);
+                if (i != selected && tab.view != null && (oldest < 0 || tab.lastSelected < tabs.get(oldest).lastSelected)) {
+                    oldest = i;
+                }
+            }
+            if (oldest < 0) {
+                return;
+            }
+            Log.d(LOG_TAG, "Evicting the WebView of tab " + oldest);
+            saveAndRelease(oldest);
+            alive--;
+        }
+    }
+
+    /**
+     * Destroy the WebViews of every tab, keeping their state, so that selecting a tab builds
+     * its WebView again where it left off
+     *
+     * @return the tab that was selected, to select again
+     */
+    public int suspend() {
+        int previous = selected;
+        for (int i = 0; i < tabs.size(); i++) {
+            if (tabs.get(i).view != null) {
+                saveAndRelease(i);
+            }
+        }
+        selected = -1;
+        return previous;
+    }
+
+    /**
+     * Destroy the WebViews of every tab, except one that the caller takes care of itself
+     *
+     * @param keep the WebView to leave alone, may be null
+     */
+    public void releaseAll(BrowserEngine keep) {
+        for (int i = 0; i < tabs.size(); i++) {
+            Tab tab = tabs.get(i);
+            if (tab.view != null && tab.view != keep) {
+                release(i);
+            }
+            tab.state = null;
+            tab.recoveredUrl = null;
+        }
+    }
+
+    /**
+     * Save the state of the live WebViews, for recover(). Too slow to do on every load, the
+     * caller does it when a renderer loss gets likely.
+     */
+    public void saveState() {
+        for (Tab tab : tabs) {
+            if (tab.view != null) {
+                tab.savedState = new Bundle();
+                if (!tab.view.saveState(tab.savedState)) {
+                    tab.savedState = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bring a page back in a new WebView from a state saved earlier, then load url if the
+     * page had moved on since
+     *
+     * @param view  the new WebView
+     * @param state the saved state, may be null
+     * @param url   the page the WebView was last on, may be null
+     */
+    static void restore(WebViewEngine view, Bundle state, String url) {
+        WebBackForwardList restored = state == null ? null : view.restoreState(state);
+        WebHistoryItem current = restored == null ? null : restored.getCurrentItem();
+        if (url != null && (current == null || !url.equals(current.getUrl()))) {
+            view.loadUrl(url);
+        }
+    }
+
+    /**
+     * A tab's WebView lost its renderer. Throw the WebView away, and build it again from the
+     * state last saved by saveState() if the tab is selected, or when it is selected next.
+     *
+     * @param index the tab
+     * @param url   the page the tab was last on, may be null
+     * @return the tab's new WebView if it is the selected tab, otherwise null
+     */
+    public WebViewEngine recover(int index, String url) {
+        Tab tab = tabs.get(index);
+        Bundle state = tab.savedState;
+        tab.savedState = null;
+        if (tab.view != null) {
+            WebViewEngine view = tab.view;
+            tab.view = null;
+            host.releaseView(index, view);
+            view.destroy();
+        }
+        tab.state = state;
+        tab.recoveredUrl = url;
+        if (index != selected) {
+            return null;
+        }
+        selected = -1;
+        return select(index, null);
+    }
+
+    private void saveAndRelease(int index) {
+        Tab tab = tabs.get(index);
+        tab.state = new Bundle();
+        if (!tab.view.saveState(tab.state)) {
+            tab.state = null;
+        }
+        tab.recoveredUrl = null;
+        release(index);
+    }
+
+    private void release(int index) {
+        Tab tab = tabs.get(index);
+        WebViewEngine view = tab.view;
+        tab.view = null;
+        tab.savedState = null;
+        view.stopLoading();
+        host.releaseView(index, view);
+        view.destroy();
+    }
+}
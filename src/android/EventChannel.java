@@ -0,0 +1,240 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.os.Handler;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+
+/**
+ * Delivers browser events (loadstart, loadstop, ...) to the JavaScript callback of an open() call.
+ *
+ * By default every event is its own PluginResult. With batching turned on, events that arrive
+ * within the batch window are buffered and sent as a single JSONArray result, which
+ * www/inappbrowserbeta.js unpacks. With coalescing also on, a newer notifyStatus or loadedStatus
+ * event replaces an older one of the same type still waiting in the buffer.
+ *
+ * Events that end the callback (keepCallback == false) are never buffered: anything pending is
+ * flushed first so that ordering is preserved.
+ *
+ * The channel also tracks which event types the JavaScript side has listeners for, so that
+ * callers can skip building events nobody will receive, see wants().
+ */
+public class EventChannel implements Runnable {
+
+    /**
+     * Default batch window, roughly one frame
+     */
+    public static final int DEFAULT_BATCH_WINDOW = 16;
+
+    /**
+     * Event types that can be subscribed to, a type's index is its bit in the subscription mask
+     */
+    private static final String[] EVENT_TYPES = {
+        "loadstart", "loadstop", "loaderror", "loadedStatus", "notifyStatus", "exit", "toolbarItemTapped", "customscheme",
+        "resourcetiming", "rendererrecovered"
+    };
+
+    private final Handler handler;
+    private CallbackContext callbackContext;
+    private boolean batching = false;
+    private boolean coalescing = false;
+    private int batchWindow = DEFAULT_BATCH_WINDOW;
+    private final ArrayList<JSONObject> pending = new ArrayList<JSONObject>();
+    private boolean flushScheduled = false;
+    private int subscriptions = 0;
+
+    /**
+     * @param handler the handler batch flushes are posted to
+     */
+    public EventChannel(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Start delivering to a new callback, dropping anything buffered for the previous one
+     *
+     * @param callbackContext the open() callback
+     */
+    public synchronized void open(CallbackContext callbackContext) {
+        this.callbackContext = callbackContext;
+        this.pending.clear();
+        this.subscriptions = 0;
+    }
+
+    public synchronized boolean isOpen() {
+        return callbackContext != null;
+    }
+
+    /**
+     * Record that the JavaScript side now has (or no longer has) listeners for an event type
+     *
+     * @param type          the event type
+     * @param subscribed    whether there are listeners
+     */
+    public synchronized void setSubscribed(String type, boolean subscribed) {
+        int bit = typeBit(type);
+        if (subscribed) {
+            subscriptions |= bit;
+        } else {
+            subscriptions &= ~bit;
+        }
+    }
+
+    /**
+     * Whether an event of this type would reach a listener. Callers should check this before
+     * building the event. Types the channel doesn't know about are always wanted.
+     *
+     * @param type the event type
+     * @return false if the event can be skipped
+     */
+    public synchronized boolean wants(String type) {
+        if (callbackContext == null) {
+            return false;
+        }
+        int bit = typeBit(type);
+        return bit == 0 || (subscriptions & bit) != 0;
+    }
+
+    private static int typeBit(String type) {
+        for (int i = 0; i < EVENT_TYPES.length; i++) {
+            if (EVENT_TYPES[i].equals(type)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param batching      buffer events and deliver them as arrays
+     * @param batchWindow   milliseconds to buffer for, 0 or less for the default
+     * @param coalescing    let newer notifyStatus/loadedStatus events replace buffered ones
+     */
+    public synchronized void configure(boolean batching, int batchWindow, boolean coalescing) {
+        if (!batching) {
+            flushLocked();
+        }
+        this.batching = batching;
+        this.batchWindow = batchWindow > 0 ? batchWindow : DEFAULT_BATCH_WINDOW;
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Send an event, or buffer it if batching is on
+     *
+     * @param event         the event payload
+     * @param keepCallback  false if this is the last event for the callback
+     * @param status        the status code to return to the JavaScript environment
+     */
+    public synchronized void send(JSONObject event, boolean keepCallback, PluginResult.Status status) {
+        if (callbackContext == null) {
+            return;
+        }
+        if (keepCallback && !wants(event.optString("type"))) {
+            return;
+        }
+        if (batching && keepCallback) {
+            if (coalescing) {
+                coalesce(event.optString("type"));
+            }
+            pending.add(event);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(this, batchWindow);
+            }
+            return;
+        }
+        flushLocked();
+        PluginResult result = new PluginResult(status, event);
+        result.setKeepCallback(keepCallback);
+        deliver(result);
+    }
+
+    /**
+     * Send a result that isn't an event, after anything still buffered
+     *
+     * @param result the result to send
+     */
+    public synchronized void sendPluginResult(PluginResult result) {
+        if (callbackContext == null) {
+            return;
+        }
+        flushLocked();
+        deliver(result);
+    }
+
+    /**
+     * Batch window expired, runs on the handler's thread
+     */
+    @Override
+    public synchronized void run() {
+        flushScheduled = false;
+        flushLocked();
+    }
+
+    /**
+     * Send everything buffered now
+     */
+    public synchronized void flush() {
+        flushLocked();
+    }
+
+    private void flushLocked() {
+        if (flushScheduled) {
+            handler.removeCallbacks(this);
+            flushScheduled = false;
+        }
+        if (pending.isEmpty() || callbackContext == null) {
+            pending.clear();
+            return;
+        }
+        PluginResult result;
+        if (pending.size() == 1) {
+            result = new PluginResult(PluginResult.Status.OK, pending.get(0));
+        } else {
+            result = new PluginResult(PluginResult.Status.OK, new JSONArray(pending));
+        }
+        pending.clear();
+        result.setKeepCallback(true);
+        callbackContext.sendPluginResult(result);
+    }
+
+    private void coalesce(String type) {
+        if (!"notifyStatus".equals(type) && !"loadedStatus".equals(type)) {
+            return;
+        }
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            if (type.equals(pending.get(i).optString("type"))) {
+                pending.remove(i);
+            }
+        }
+    }
+
+    private void deliver(PluginResult result) {
+        callbackContext.sendPluginResult(result);
+        if (!result.getKeepCallback()) {
+            callbackContext = null;
+        }
+    }
+}
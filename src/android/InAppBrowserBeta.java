@@ -22,12 +22,15 @@ import android.annotation.SuppressLint;
 import org.apache.cordova.inappbrowserbeta.InAppBrowserBetaDialog;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.InputType;
 import android.util.Log;
 import android.util.TypedValue;
@@ -40,19 +43,22 @@ import android.view.WindowManager.LayoutParams;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
 import android.webkit.JavascriptInterface;
+import android.webkit.RenderProcessGoneDetail;
+import android.webkit.WebResourceResponse;
+import android.webkit.ValueCallback;
 import android.webkit.CookieManager;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 
 import android.app.ActionBar;
 import android.app.ActionBar.Tab;
 import android.app.Activity;
-import android.support.v4.app.Fragment;
 import android.app.FragmentManager;
 import android.app.FragmentTransaction;
 import android.graphics.drawable.ColorDrawable;
@@ -63,15 +69,29 @@ import android.R;
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.Config;
 import org.apache.cordova.CordovaArgs;
+import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CordovaWebView;
 import org.apache.cordova.LOG;
 import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @SuppressLint("SetJavaScriptEnabled")
 public class InAppBrowserBeta extends CordovaPlugin {
@@ -87,201 +107,675 @@ public class InAppBrowserBeta extends CordovaPlugin {
     private static final String LOAD_START_EVENT = "loadstart";
     private static final String LOAD_STOP_EVENT = "loadstop";
     private static final String LOAD_ERROR_EVENT = "loaderror";
+    private static final String CUSTOM_SCHEME_EVENT = "customscheme";
+    private static final String RESOURCE_TIMING_EVENT = "resourcetiming";
+    private static final String RENDERER_RECOVERED_EVENT = "rendererrecovered";
     private static final String CLOSE_BUTTON_CAPTION = "closebuttoncaption";
     private static final String CLEAR_ALL_CACHE = "clearcache";
     private static final String CLEAR_SESSION_CACHE = "clearsessioncache";
+    private static final String RECYCLE = "recycle";
+    private static final String BATCH_EVENTS = "batchevents";
+    private static final String BATCH_WINDOW = "batchwindow";
+    private static final String COALESCE_EVENTS = "coalesceevents";
+    private static final String RESOURCE_TIMING = "resourcetiming";
+    private static final String PERSIST = "persist";
+    private static final String PREFETCH = "prefetch";
+    private static final int DEFAULT_NOTIFY_MIN_INTERVAL = 250;
+    // Delivers shotbowAppNotify through NOTIFYSTATUS only when the page sets it, instead of polling it.
+    // Writes are coalesced so that at most one callback is made per minimum interval (the %d).
+    private static final String NOTIFY_STATUS_SCRIPT = "(function(w, min) {"
+            + " var n = w.shotbowAppNotifyChannel; if (n) { n.min = min; return; }"
+            + " if (typeof w.shotbowAppNotifyStatusInterval !== 'undefined') { clearInterval(w.shotbowAppNotifyStatusInterval); }"
+            + " n = w.shotbowAppNotifyChannel = { min: min, value: w.shotbowAppNotify, last: 0, timer: null, paused: false };"
+            + " function flush() { n.timer = null; var s = (typeof n.value !== 'undefined' ? n.value : false).toString(); n.value = false;"
+            + " if (s === 'false') { return; } n.last = Date.now(); try { w.NOTIFYSTATUS.callback(s); } catch(e) { } }"
+            + " function schedule() { if (n.timer === null && !n.paused) { n.timer = setTimeout(flush, Math.max(0, n.last + n.min - Date.now())); } }"
+            // Paused while the browser is in the background, see BACKGROUND_SCRIPT
+            + " n.pause = function(p) { n.paused = p; if (p) { clearTimeout(n.timer); n.timer = null; }"
+            + " else if (n.value !== false && typeof n.value !== 'undefined') { schedule(); } };"
+            + " try { Object.defineProperty(w, 'shotbowAppNotify', { configurable: true, get: function() { return n.value; },"
+            + " set: function(v) { n.value = v; if (v !== false) { schedule(); } } }); }"
+            // A page that declared it with var can't have it redefined, so poll it but still only call back on a change
+            + " catch(e) { var poll = function() { n.value = w.shotbowAppNotify; w.shotbowAppNotify = false; flush(); };"
+            + " n.pause = function(p) { clearInterval(w.shotbowAppNotifyStatusInterval); if (!p) { w.shotbowAppNotifyStatusInterval = setInterval(poll, Math.max(n.min, 1000)); } };"
+            + " n.pause(!!w.shotbowAppBackground); return; }"
+            + " if (w.shotbowAppBackground) { n.paused = true; }"
+            + " if (n.value !== false && typeof n.value !== 'undefined') { schedule(); }"
+            + " })(window, %d);";
+    private static final String LOADED_STATUS_INTERFACE = "LOADEDSTATUS";
+    private static final String NOTIFY_STATUS_INTERFACE = "NOTIFYSTATUS";
+    private static final String LOADED_STATUS_WAIT_ID = "loadedStatus";
+    private static final int DEFAULT_WAIT_TIMEOUT = 30000;
+    // Resolves a wait through LOADEDSTATUS.resolve() the first time test() returns something other than
+    // null/undefined/false, re-testing on every DOM mutation. Arguments: the quoted wait id and test().
+    private static final String WAIT_SCRIPT = "(function(w, d, id, test) {"
+            + " var W = w.shotbowAppWaits = w.shotbowAppWaits || {}; if (W[id]) { W[id].disconnect(); delete W[id]; }"
+            + " function check() { var v; try { v = test(); } catch(e) { return false; }"
+            + " if (v === null || typeof v === 'undefined' || v === false) { return false; }"
+            + " if (W[id]) { W[id].disconnect(); delete W[id]; } w.LOADEDSTATUS.resolve(id, String(v)); return true; }"
+            + " if (check()) { return; }"
+            + " var M = w.MutationObserver || w.WebKitMutationObserver;"
+            + " if (M) { W[id] = new M(check); W[id].observe(d.documentElement, { childList: true, subtree: true, attributes: true, characterData: true }); }"
+            // No MutationObserver before the KitKat WebView, so fall back to a short poll there
+            + " else { var t = null; W[id] = { disconnect: function() { clearInterval(t); },"
+            + " pause: function(p) { clearInterval(t); if (!p) { t = setInterval(check, 100); } } }; W[id].pause(!!w.shotbowAppBackground); }"
+            + " })(window, document, %s, %s);";
+    private static final String WAIT_SELECTOR_TEST = "function() { var e = document.querySelector(%s); return e ? (%s ? e.getAttribute(%<s) : true) : null; }";
+    private static final String WAIT_CONDITION_TEST = "function() { return eval(%s); }";
+    // Puts the page in the background or back (%s is true or false): document.hidden and
+    // visibilityState follow, visibilitychange fires, and our notify and wait polling stops
+    private static final String BACKGROUND_SCRIPT = "(function(w, d, hidden) {"
+            + " if (!!w.shotbowAppBackground === hidden) { return; } w.shotbowAppBackground = hidden;"
+            + " try { if (hidden) {"
+            + " Object.defineProperty(d, 'hidden', { configurable: true, get: function() { return true; } });"
+            + " Object.defineProperty(d, 'visibilityState', { configurable: true, get: function() { return 'hidden'; } });"
+            + " } else { delete d.hidden; delete d.visibilityState; } } catch(e) { }"
+            + " var n = w.shotbowAppNotifyChannel; if (n && n.pause) { n.pause(hidden); }"
+            + " var W = w.shotbowAppWaits || {}; for (var id in W) { if (W[id].pause) { W[id].pause(hidden); } }"
+            + " var e = d.createEvent('Event'); e.initEvent('visibilitychange', true, false); d.dispatchEvent(e);"
+            + " })(window, document, %s);";
+    private static final String CANCEL_WAIT_SCRIPT = "(function(W, id) { if (W && W[id]) { W[id].disconnect(); delete W[id]; } })(window.shotbowAppWaits, %s);";
+    private static final String WEBVIEW_POOL_SIZE = "InAppBrowserWebViewPoolSize";
+    private static final int DEFAULT_WEBVIEW_POOL_SIZE = 1;
+    private static final String TAB_BAR = "tabbar";
+    private static final String TAB_BAR_INIT = "tabbarinit";
+    private static final String TAB_WEBVIEW_LIMIT = "InAppBrowserTabWebViewLimit";
+    private static final int DEFAULT_TAB_WEBVIEW_LIMIT = 3;
+    // In kilobytes
+    private static final String PREFETCH_CACHE_SIZE = "InAppBrowserPrefetchCacheSize";
+    private static final int DEFAULT_PREFETCH_CACHE_SIZE = 4096;
+    // Shown by tabbar=yes when open() isn't given any tabs, as on iOS
+    private static final String DEFAULT_TABS = "[\"Home\", \"Maps\", \"Forums\", \"Chat\"]";
+    // The actions on an open browser, see dispatch()
+    private static final Set<String> BROWSER_ACTIONS = new HashSet<String>(Arrays.asList("close", "show", "hide",
+            "subscribe", "unsubscribe", "injectScriptCode", "injectScriptFile", "injectStyleCode", "injectStyleFile",
+            "loadedStatus", "waitForSelector", "waitForCondition", "cancelWait", "notifyStatus", "selectTab"));
+
+    private InAppWebViewPool webViewPool;
+    private final SchemeRouter schemeRouter = new SchemeRouter();
+    private final NavigationMetrics metrics = new NavigationMetrics();
+    private final ActionTimings actionTimings = new ActionTimings();
+    // Handles the actions one at a time and in order, so that only view changes reach the UI thread
+    private ExecutorService worker;
+    private MemoryPressure memoryPressure;
+    // Saved persist=yes browsers, null off the device
+    private BrowserSnapshots snapshots;
+    // Fetches the pages of prefetch=yes opens and of the prefetch action, null off the device
+    private PagePrefetcher prefetcher;
+    // Debug builds only
+    private LeakWatcher leakWatcher;
+    // Receives the diagnostics events, see reportLeaks()
+    private volatile CallbackContext diagnosticsCallback;
+    // Created in initialize(), so that the plugin classes can be loaded off the device
+    private Handler handler;
+    // Only off the device, see setHeadlessEngines()
+    private BrowserEngine.Factory engines;
+    private Scheduler scheduler;
+    private UiTaskQueue uiQueue;
+    // Open browsers by id, in the order they were opened
+    private final LinkedHashMap<String, BrowserInstance> browsers = new LinkedHashMap<String, BrowserInstance>();
+    // A browser closed with recycle=yes, waiting to be reused by the next open
+    private BrowserInstance parked;
+    private int browserCounter = 0;
 
-    private InAppBrowserBetaDialog dialog;
-    private WebView inAppWebView;
-    private EditText edittext;
-    private CallbackContext callbackContext;
-    private boolean showLocationBar = true;
-    private boolean openWindowHidden = false;
-    private String buttonLabel = "Done";
-    private boolean clearAllCache= false;
-    private boolean clearSessionCache=false;
-    private boolean showTabBar = true;
-    private int tabBarInit = 0;
+    /**
+     * A waitForSelector/waitForCondition request that has not resolved yet.
+     * The script is kept so that the wait can be re-armed after a navigation.
+     */
+    private class PendingWait implements Runnable {
+        final BrowserInstance browser;
+        final String id;
+        final String script;
+        // null when the result should go out as a loadedStatus event
+        final CallbackContext callbackContext;
+
+        PendingWait(BrowserInstance browser, String id, String script, CallbackContext callbackContext) {
+            this.browser = browser;
+            this.id = id;
+            this.script = script;
+            this.callbackContext = callbackContext;
+        }
+
+        /**
+         * Timeout, runs on the UI thread
+         */
+        @Override
+        public void run() {
+            if (browser.removeWait(id) != this) {
+                return;
+            }
+            Log.d(LOG_TAG, "Wait timed out: " + id);
+            if (browser.engine != null) {
+                browser.engine.evaluateJavascript(String.format(CANCEL_WAIT_SCRIPT, InjectionTemplate.quote(id)), null);
+            }
+            if (callbackContext != null) {
+                callbackContext.error("timeout");
+            }
+        }
+    }
 
     public class LoadedStatusInterface {
+        private final BrowserInstance browser;
+
+        LoadedStatusInterface(BrowserInstance browser) {
+            this.browser = browser;
+        }
+
+        /**
+         * Called by the injected wait script once its condition holds
+         */
+        @JavascriptInterface
+        @SuppressWarnings("unused")
+        public void resolve(String id, String value) {
+            PendingWait wait = browser.removeWait(id);
+            if (wait == null) {
+                return;
+            }
+            cancelTimeout(wait);
+            if (wait.callbackContext == null) {
+                callback(value);
+            } else {
+                wait.callbackContext.success(value);
+            }
+        }
+
         @JavascriptInterface
         @SuppressWarnings("unused")
         public void callback(String s) {
-            try {
-                JSONObject obj = new JSONObject();
-                obj.put("type", "loadedStatus");
-                obj.put("loaded", s);
+            if (browser.events.wants("loadedStatus")) {
+                try {
+                    JSONObject obj = new JSONObject();
+                    obj.put("type", "loadedStatus");
+                    obj.put("loaded", s);
 
-                //if (s != "false" && inAppWebView != null) inAppWebView.invalidate();
-    
-                sendUpdate(obj, true);
-            } catch (JSONException ex) {
-                Log.d(LOG_TAG, "Should never happen");
+                    //if (s != "false" && inAppWebView != null) inAppWebView.invalidate();
+
+                    browser.sendUpdate(obj, true);
+                } catch (JSONException ex) {
+                    Log.d(LOG_TAG, "Should never happen");
+                }
             }
         }
     }
 
     public class NotifyStatusInterface {
+        private final BrowserInstance browser;
+
+        NotifyStatusInterface(BrowserInstance browser) {
+            this.browser = browser;
+        }
+
         @JavascriptInterface
         @SuppressWarnings("unused")
         public void callback(String s) {
-            try {
-                JSONObject obj = new JSONObject();
-                obj.put("type", "notifyStatus");
-                obj.put("notify", s);
+            if (browser.events.wants("notifyStatus")) {
+                try {
+                    JSONObject obj = new JSONObject();
+                    obj.put("type", "notifyStatus");
+                    obj.put("notify", s);
 
-                //if (s != "false" && inAppWebView != null) inAppWebView.invalidate();
-    
-                sendUpdate(obj, true);
-            } catch (JSONException ex) {
-                Log.d(LOG_TAG, "Should never happen");
+                    //if (s != "false" && inAppWebView != null) inAppWebView.invalidate();
+
+                    browser.sendUpdate(obj, true);
+                } catch (JSONException ex) {
+                    Log.d(LOG_TAG, "Should never happen");
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets up the WebView pool, starts listening for memory pressure, see trimMemory(), and
+     * starts reading the saved browsers. Debug builds also watch closed browsers for leaks.
+     *
+     * The pool size is read from the InAppBrowserWebViewPoolSize preference, 0 disables it.
+     * The pool is only filled once the first browser has taken a WebView from it, an app that
+     * never opens one doesn't build any.
+     */
+    @Override
+    public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+        super.initialize(cordova, webView);
+        handler = new Handler(Looper.getMainLooper());
+        worker = Executors.newSingleThreadExecutor();
+        uiQueue = new UiTaskQueue(new Executor() {
+            @Override
+            public void execute(Runnable flush) {
+                handler.post(flush);
+            }
+        }, actionTimings);
+        memoryPressure = new MemoryPressure(new MemoryPressure.Listener() {
+            @Override
+            public void onMemoryPressure(int stage) {
+                trimMemory(stage);
+            }
+        });
+        cordova.getActivity().getApplicationContext().registerComponentCallbacks(memoryPressure);
+        snapshots = new BrowserSnapshots(new File(cordova.getActivity().getCacheDir(), "inappbrowserbeta"));
+        snapshots.preload();
+        prefetcher = new PagePrefetcher(cordova.getActivity().getApplicationContext(),
+                1024L * getAppSettingInt(PREFETCH_CACHE_SIZE, DEFAULT_PREFETCH_CACHE_SIZE));
+        if ((cordova.getActivity().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            leakWatcher = new LeakWatcher(new LeakWatcher.Listener() {
+                @Override
+                public void onLeaks(JSONArray leaks) {
+                    reportLeaks(leaks);
+                }
+            });
+        }
+        webViewPool = new InAppWebViewPool(new InAppWebViewPool.Factory() {
+            @Override
+            public WebView create() {
+                return createWebView();
+            }
+        }, getAppSettingInt(WEBVIEW_POOL_SIZE, DEFAULT_WEBVIEW_POOL_SIZE));
+    }
+
+    /**
+     * Run the plugin without a device, for load testing it on a plain JVM, see benchmarks/.
+     *
+     * Browsers opened from then on get an engine from the factory and no dialog, toolbar or
+     * tabs, recycle=yes parks that engine, an engine whose renderer is gone is replaced by a new
+     * one loading the same page, and everything that would run on the UI thread goes
+     * to the executor instead, which must run tasks one at a time, in order. Without a Looper
+     * there are no wait timeouts and no batchevents.
+     *
+     * @param factory   makes the engine of each browser
+     * @param executor  the engines' thread
+     */
+    public void setHeadlessEngines(BrowserEngine.Factory factory, Executor executor) {
+        setHeadlessEngines(factory, executor, null);
+    }
+
+    /**
+     * Run the plugin without a device, with wait timeouts, see setHeadlessEngines()
+     *
+     * @param scheduler runs the wait timeouts on the engines' thread
+     */
+    public void setHeadlessEngines(BrowserEngine.Factory factory, Executor executor, Scheduler scheduler) {
+        this.engines = factory;
+        this.scheduler = scheduler;
+        this.uiQueue = new UiTaskQueue(executor, actionTimings);
+    }
+
+    /**
+     * Runs tasks on the engines' thread after a delay, as a Handler does on the UI thread
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    /**
+     * Run a task on the thread the browsers' engines belong to, the UI thread on a device,
+     * batched with the other pending ones, see UiTaskQueue
+     */
+    private void runOnUiThread(Runnable task) {
+        uiQueue.post(null, task);
+    }
+
+    /**
+     * Run a task for an action on the UI thread, counting its time in getThreadMetrics
+     *
+     * @param action    the action the task belongs to, see ActionTimings
+     */
+    private void runOnUiThread(String action, Runnable task) {
+        uiQueue.post(action, task);
+    }
+
+    /**
+     * Run a task for an action on the UI thread, in place of a pending one with the same key
+     *
+     * @param action    the action the task belongs to, see ActionTimings
+     * @param key       what the task sets, such as a browser's visibility
+     */
+    private void runOnUiThread(String action, Object key, Runnable task) {
+        uiQueue.post(action, key, task);
+    }
+
+    /**
+     * Run an action on the worker thread, counting its time in getThreadMetrics. Headless, the
+     * caller's thread does the work.
+     */
+    private void runOnWorker(final String action, final Runnable task) {
+        Runnable timed = new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    actionTimings.record(action, ActionTimings.WORKER, System.nanoTime() - start);
+                }
             }
+        };
+        if (worker == null) {
+            timed.run();
+        } else {
+            worker.execute(timed);
+        }
+    }
+
+    /**
+     * @return true if engines hand the value of a script back to its callback
+     */
+    private boolean canEvaluateJavascript() {
+        return engines != null || WebViewEngine.canEvaluateJavascript();
+    }
+
+    private void scheduleTimeout(PendingWait wait, int timeout) {
+        // No Looper to time out on with headless engines, only their scheduler if any
+        if (handler != null) {
+            handler.postDelayed(wait, timeout);
+        } else if (scheduler != null) {
+            scheduler.postDelayed(wait, timeout);
+        }
+    }
+
+    private void cancelTimeout(PendingWait wait) {
+        if (handler != null) {
+            handler.removeCallbacks(wait);
+        } else if (scheduler != null) {
+            scheduler.removeCallbacks(wait);
         }
     }
 
     /**
      * Executes the request and returns PluginResult.
      *
+     * Every action but open takes the id of the browser it is for as its last argument,
+     * see browserFor().
+     *
      * @param action        The action to execute.
      * @param args          JSONArry of arguments for the plugin.
      * @param callbackId    The callback id used when calling back into JavaScript.
      * @return              A PluginResult object with a status and message.
      */
-    public boolean execute(String action, CordovaArgs args, final CallbackContext callbackContext) throws JSONException {
+    public boolean execute(final String action, final CordovaArgs args, final CallbackContext callbackContext) throws JSONException {
         if (action.equals("open")) {
-            this.callbackContext = callbackContext;
             final String url = args.getString(0);
             String t = args.optString(1);
             if (t == null || t.equals("") || t.equals(NULL)) {
                 t = SELF;
             }
             final String target = t;
-            final HashMap<String, Boolean> features = parseFeature(args.optString(2));
-            
-            Log.d(LOG_TAG, "target = " + target);
-            
-            this.cordova.getActivity().runOnUiThread(new Runnable() {
+            // Registered right away, so that the actions after this one find the browser
+            final BrowserInstance browser = openBrowser(args.isNull(3) ? null : args.getString(3), callbackContext);
+            browser.openedAt = SystemClock.elapsedRealtime();
+            final HashMap<String, Boolean> features = browser.parseFeature(args.optString(2));
+            final JSONArray tabs = args.isNull(4) ? null : args.getJSONArray(4);
+            if (prefetcher != null && features != null && Boolean.TRUE.equals(features.get(PREFETCH))
+                    && !SELF.equals(target) && !SYSTEM.equals(target)
+                    && !Boolean.TRUE.equals(features.get(CLEAR_ALL_CACHE))
+                    && !Boolean.TRUE.equals(features.get(CLEAR_SESSION_CACHE))) {
+                // Under way while the browser is built, see PagePrefetcher
+                browser.prefetch = prefetcher.start(url);
+            }
+
+            runOnWorker(action, new Runnable() {
                 @Override
                 public void run() {
-                    String result = "";
-                    // SELF
-                    if (SELF.equals(target)) {
-                        Log.d(LOG_TAG, "in self");
-                        // load in webview
-                        if (url.startsWith("file://") || url.startsWith("javascript:") 
-                                || Config.isUrlWhiteListed(url)) {
-                            webView.loadUrl(url);
-                        }
-                        //Load the dialer
-                        else if (url.startsWith(WebView.SCHEME_TEL))
-                        {
-                            try {
-                                Intent intent = new Intent(Intent.ACTION_DIAL);
-                                intent.setData(Uri.parse(url));
-                               cordova.getActivity().startActivity(intent);
-                            } catch (android.content.ActivityNotFoundException e) {
-                                LOG.e(LOG_TAG, "Error dialing " + url + ": " + e.toString());
-                            }
-                        }
-                        // load in InAppBrowser
-                        else {
-                            result = showWebPage(url, features);
-                        }
-                    }
-                    // SYSTEM
-                    else if (SYSTEM.equals(target)) {
-                        Log.d(LOG_TAG, "in system");
-                        result = openExternal(url);
-                    }
-                    // BLANK - or anything else
-                    else {
-                        Log.d(LOG_TAG, "in blank");
-                        result = showWebPage(url, features);
+                    open(browser, url, target, features, tabs, callbackContext);
+                }
+            });
+            return true;
+        }
+        if (action.equals("registerScheme")) {
+            schemeRouter.register(args.getString(0), args.optBoolean(1));
+            return true;
+        }
+        if (action.equals("getMetrics")) {
+            callbackContext.success(metrics.toJSON());
+            if (args.optBoolean(0)) {
+                metrics.reset();
+            }
+            return true;
+        }
+
+        if (action.equals("prefetch")) {
+            if (prefetcher == null) {
+                callbackContext.error("unavailable");
+                return true;
+            }
+            JSONArray list = args.getJSONArray(0);
+            ArrayList<String> urls = new ArrayList<String>();
+            for (int i = 0; i < list.length(); i++) {
+                urls.add(list.getString(i));
+            }
+            prefetcher.warm(urls, args.isNull(1) ? PagePrefetcher.DEFAULT_CONCURRENCY : args.getInt(1),
+                    args.isNull(2) ? PagePrefetcher.DEFAULT_MAX_AGE : args.getLong(2),
+                    args.isNull(3) || args.getBoolean(3), new PagePrefetcher.WarmupListener() {
+                @Override
+                public void onWarmed(int fetched, int failed, int cancelled) {
+                    try {
+                        JSONObject obj = new JSONObject();
+                        obj.put("fetched", fetched);
+                        obj.put("failed", failed);
+                        obj.put("cancelled", cancelled);
+                        callbackContext.success(obj);
+                    } catch (JSONException ex) {
+                        Log.d(LOG_TAG, "Should never happen");
                     }
-    
-                    PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, result);
-                    pluginResult.setKeepCallback(true);
-                    callbackContext.sendPluginResult(pluginResult);
                 }
             });
+            return true;
         }
-        else if (action.equals("close")) {
-            closeDialog();
+
+        if (action.equals("diagnostics")) {
+            diagnosticsCallback = callbackContext;
+            PluginResult pluginResult = new PluginResult(PluginResult.Status.NO_RESULT);
+            pluginResult.setKeepCallback(true);
+            callbackContext.sendPluginResult(pluginResult);
+            return true;
         }
-        else if (action.equals("injectScriptCode")) {
-            String jsWrapper = null;
-            if (args.getBoolean(1)) {
-                jsWrapper = String.format("prompt(JSON.stringify([eval(%%s)]), 'gap-iab://%s')", callbackContext.getCallbackId());
+
+        if (action.equals("getThreadMetrics")) {
+            JSONObject threadMetrics = actionTimings.toJSON();
+            if (uiQueue != null) {
+                threadMetrics.put("uiQueue", uiQueue.toJSON());
+            }
+            callbackContext.success(threadMetrics);
+            if (args.optBoolean(0)) {
+                actionTimings.reset();
+                if (uiQueue != null) {
+                    uiQueue.reset();
+                }
             }
-            injectDeferredObject(args.getString(0), jsWrapper);
+            return true;
         }
-        else if (action.equals("injectScriptFile")) {
-            String jsWrapper;
-            if (args.getBoolean(1)) {
-                jsWrapper = String.format("(function(d) { var c = d.createElement('script'); c.src = %%s; c.onload = function() { prompt('', 'gap-iab://%s'); }; d.body.appendChild(c); })(document)", callbackContext.getCallbackId());
+        if (!BROWSER_ACTIONS.contains(action)) {
+            return false;
+        }
+
+        final BrowserInstance browser = browserFor(action, args);
+        if (browser == null) {
+            // Already closed, fail anything that is waiting on a result
+            callbackContext.error("closed");
+            return true;
+        }
+        runOnWorker(action, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dispatch(browser, action, args, callbackContext);
+                } catch (JSONException e) {
+                    callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.JSON_EXCEPTION));
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * The worker thread part of open(): picking where the URL goes, setting up the browser and
+     * answering. Only the view changes are posted to the UI thread.
+     */
+    private void open(final BrowserInstance browser, final String url, String target, HashMap<String, Boolean> features,
+                      JSONArray tabs, CallbackContext callbackContext) {
+        Log.d(LOG_TAG, "target = " + target);
+
+        String result = "";
+        boolean shown = false;
+        // SELF
+        if (SELF.equals(target)) {
+            Log.d(LOG_TAG, "in self");
+            // load in webview
+            if (url.startsWith("file://") || url.startsWith("javascript:")
+                    || Config.isUrlWhiteListed(url)) {
+                runOnUiThread("open", new Runnable() {
+                    @Override
+                    public void run() {
+                        webView.loadUrl(url);
+                    }
+                });
+            }
+            //Load the dialer
+            else if (url.startsWith(WebView.SCHEME_TEL))
+            {
+                try {
+                    Intent intent = new Intent(Intent.ACTION_DIAL);
+                    intent.setData(Uri.parse(url));
+                   cordova.getActivity().startActivity(intent);
+                } catch (android.content.ActivityNotFoundException e) {
+                    LOG.e(LOG_TAG, "Error dialing " + url + ": " + e.toString());
+                }
+            }
+            // load in InAppBrowser, unless another app or the JavaScript side takes the URL
+            else if (!browser.route(url, -1, true)) {
+                result = browser.showWebPage(url, features, tabs);
+                shown = true;
+            }
+        }
+        // SYSTEM
+        else if (SYSTEM.equals(target)) {
+            Log.d(LOG_TAG, "in system");
+            result = openExternal(url);
+        }
+        // BLANK - or anything else
+        else {
+            Log.d(LOG_TAG, "in blank");
+            if (!browser.route(url, -1, true)) {
+                result = browser.showWebPage(url, features, tabs);
+                shown = true;
+            }
+        }
+        if (!shown) {
+            // Nothing was opened for this id after all
+            removeBrowser(browser);
+            if (browser.recycled) {
+                // The parked browser openBrowser() took, its dialog and WebView are still
+                // there for the next open
+                park(browser);
+            }
+        }
+
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, result);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+
+    /**
+     * Handle one of the BROWSER_ACTIONS, on the worker thread
+     */
+    private void dispatch(final BrowserInstance browser, String action, CordovaArgs args, CallbackContext callbackContext) throws JSONException {
+        if (action.equals("close")) {
+            browser.closeDialog();
+        }
+        else if (action.equals("injectScriptCode")) {
+            if (!args.getBoolean(1)) {
+                browser.injectDeferredObject(args.getString(0), null, null);
+            } else if (canEvaluateJavascript()) {
+                browser.evaluateDeferredObject(args.getString(0), InjectionTemplate.SCRIPT_CODE_RESULT, callbackContext);
             } else {
-                jsWrapper = "(function(d) { var c = d.createElement('script'); c.src = %s; d.body.appendChild(c); })(document)";
+                browser.injectDeferredObject(args.getString(0), InjectionTemplate.SCRIPT_CODE_WITH_CALLBACK, callbackContext.getCallbackId());
             }
-            injectDeferredObject(args.getString(0), jsWrapper);
+        }
+        else if (action.equals("injectScriptFile")) {
+            // The callback has to wait for the script's onload, so this one always goes through prompt()
+            InjectionTemplate jsWrapper = args.getBoolean(1) ? InjectionTemplate.SCRIPT_FILE_WITH_CALLBACK : InjectionTemplate.SCRIPT_FILE;
+            browser.injectDeferredObject(args.getString(0), jsWrapper, callbackContext.getCallbackId());
         }
         else if (action.equals("injectStyleCode")) {
-            String jsWrapper;
-            if (args.getBoolean(1)) {
-                jsWrapper = String.format("(function(d) { var c = d.createElement('style'); c.innerHTML = %%s; d.body.appendChild(c); prompt('', 'gap-iab://%s');})(document)", callbackContext.getCallbackId());
+            if (!args.getBoolean(1)) {
+                browser.injectDeferredObject(args.getString(0), InjectionTemplate.STYLE_CODE, null);
+            } else if (canEvaluateJavascript()) {
+                browser.evaluateDeferredObject(args.getString(0), InjectionTemplate.STYLE_CODE, callbackContext);
             } else {
-                jsWrapper = "(function(d) { var c = d.createElement('style'); c.innerHTML = %s; d.body.appendChild(c); })(document)";
+                browser.injectDeferredObject(args.getString(0), InjectionTemplate.STYLE_CODE_WITH_CALLBACK, callbackContext.getCallbackId());
             }
-            injectDeferredObject(args.getString(0), jsWrapper);
         }
         else if (action.equals("injectStyleFile")) {
-            String jsWrapper;
-            if (args.getBoolean(1)) {
-                jsWrapper = String.format("(function(d) { var c = d.createElement('link'); c.rel='stylesheet'; c.type='text/css'; c.href = %%s; d.head.appendChild(c); prompt('', 'gap-iab://%s');})(document)", callbackContext.getCallbackId());
+            if (!args.getBoolean(1)) {
+                browser.injectDeferredObject(args.getString(0), InjectionTemplate.STYLE_FILE, null);
+            } else if (canEvaluateJavascript()) {
+                browser.evaluateDeferredObject(args.getString(0), InjectionTemplate.STYLE_FILE, callbackContext);
             } else {
-                jsWrapper = "(function(d) { var c = d.createElement('link'); c.rel='stylesheet'; c.type='text/css'; c.href = %s; d.head.appendChild(c); })(document)";
+                browser.injectDeferredObject(args.getString(0), InjectionTemplate.STYLE_FILE_WITH_CALLBACK, callbackContext.getCallbackId());
             }
-            injectDeferredObject(args.getString(0), jsWrapper);
         }
         else if (action.equals("show")) {
-            this.cordova.getActivity().runOnUiThread(new Runnable() {
+            runOnUiThread("show", browser.visibilityKey, new Runnable() {
                 @Override
                 public void run() {
-                    dialog.show();
+                    browser.restore();
+                    if (browser.dialog != null) {
+                        browser.dialog.show();
+                    }
+                    browser.setBackground(false);
                     //dialog.setVisibility(View.VISIBLE);
                 }
             });
             PluginResult pluginResult = new PluginResult(PluginResult.Status.OK);
             pluginResult.setKeepCallback(true);
-            this.callbackContext.sendPluginResult(pluginResult);
+            browser.events.sendPluginResult(pluginResult);
         }
         else if (action.equals("loadedStatus")) {
-            this.cordova.getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    inAppWebView.addJavascriptInterface(new LoadedStatusInterface(), "LOADEDSTATUS");
-                    addCallbackInterface(inAppWebView);
-                    //inAppWebView.loadUrl("javascript:setTimeout(function() { try { var s = document.getElementById('shotbowAppPageLoaded').getAttribute('token').toString(); console.log('~$~$~$~$~$~Sending loadedStatus callback: ' + s); window.LOADEDSTATUS.callback(s); } catch(e) { console.log('$$$$$$$$ERROR TRYING TO EXEC LOADEDSTATUS CALLBACK: ' + e.message); } }, 100);");
-                    inAppWebView.loadUrl("javascript:setTimeout(function() { try { var s = document.getElementById('shotbowAppPageLoaded').getAttribute('token').toString(); window.LOADEDSTATUS.callback(s); } catch(e) { } }, 100);");
-                }
-            });
+            String test = String.format(WAIT_SELECTOR_TEST, InjectionTemplate.quote("#shotbowAppPageLoaded"), InjectionTemplate.quote("token"));
+            browser.startWait(LOADED_STATUS_WAIT_ID, test, DEFAULT_WAIT_TIMEOUT, null);
+        }
+        else if (action.equals("waitForSelector")) {
+            String attribute = args.isNull(1) ? "" : args.getString(1);
+            String test = String.format(WAIT_SELECTOR_TEST, InjectionTemplate.quote(args.getString(0)), InjectionTemplate.quote(attribute));
+            browser.startWait(args.getString(3), test, args.isNull(2) ? DEFAULT_WAIT_TIMEOUT : args.getInt(2), callbackContext);
+        }
+        else if (action.equals("waitForCondition")) {
+            String test = String.format(WAIT_CONDITION_TEST, InjectionTemplate.quote(args.getString(0)));
+            browser.startWait(args.getString(2), test, args.isNull(1) ? DEFAULT_WAIT_TIMEOUT : args.getInt(1), callbackContext);
+        }
+        else if (action.equals("subscribe")) {
+            browser.events.setSubscribed(args.getString(0), true);
+        }
+        else if (action.equals("unsubscribe")) {
+            browser.events.setSubscribed(args.getString(0), false);
+        }
+        else if (action.equals("cancelWait")) {
+            browser.cancelWait(args.getString(0));
         }
         else if (action.equals("notifyStatus")) {
-            this.cordova.getActivity().runOnUiThread(new Runnable() {
+            final int minInterval = args.isNull(0) ? DEFAULT_NOTIFY_MIN_INTERVAL : Math.max(0, args.optInt(0));
+            runOnUiThread("notifyStatus", browser.notifyStatusKey, new Runnable() {
                 @Override
                 public void run() {
-                    inAppWebView.addJavascriptInterface(new NotifyStatusInterface(), "NOTIFYSTATUS");
-                    addCallbackInterfaceNotify(inAppWebView);
+                    if (browser.engine == null) {
+                        return;
+                    }
+                    browser.addCallbackInterfaceNotify(browser.engine);
                     //inAppWebView.loadUrl("javascript:if (typeof shotbowAppNotifyStatusInterval !== 'undefined') { clearInterval(shotbowAppNotifyStatusInterval); } shotbowAppNotifyStatusInterval = setInterval(function() { try { var s = (typeof shotbowAppNotify !== 'undefined' ? shotbowAppNotify : false).toString(); shotbowAppNotify = false; console.log('~$~$~$~$~$~Sending notifyStatus callback: ' + s); window.NOTIFYSTATUS.callback(s); } catch(e) { console.log('$$$$$$$$ERROR TRYING TO EXEC NOTIFYSTATUS CALLBACK: ' + e.message); } }, 1000);");
-                    inAppWebView.loadUrl("javascript:if (typeof shotbowAppNotifyStatusInterval !== 'undefined') { clearInterval(shotbowAppNotifyStatusInterval); } shotbowAppNotifyStatusInterval = setInterval(function() { try { var s = (typeof shotbowAppNotify !== 'undefined' ? shotbowAppNotify : false).toString(); shotbowAppNotify = false; window.NOTIFYSTATUS.callback(s); } catch(e) { } }, 1000);");
+                    browser.engine.evaluateJavascript(String.format(NOTIFY_STATUS_SCRIPT, minInterval), null);
                 }
             });
         } else if (action.equals("hide")) {
-            hideDialog();
+            browser.hideDialog();
         }
-        else {
-            return false;
+        else if (action.equals("selectTab")) {
+            final int index = args.getInt(0);
+            runOnUiThread("selectTab", browser.tabKey, new Runnable() {
+                @Override
+                public void run() {
+                    browser.showTab(index);
+                }
+            });
         }
-        return true;
     }
 
     /**
@@ -289,98 +783,257 @@ public class InAppBrowserBeta extends CordovaPlugin {
      */
     @Override
     public void onReset() {
-        closeDialog();        
+        closeAll();
     }
-    
+
     /**
-     * Called by AccelBroker when listener is to be shut down.
-     * Stop listener.
+     * Save the state of the browsers, their renderers and the process may not come back, the
+     * persist=yes ones to disk, and stop warming pages
      */
-    public void onDestroy() {
-        closeDialog();
+    @Override
+    public void onPause(boolean multitasking) {
+        if (prefetcher != null) {
+            prefetcher.cancelWarmups();
+        }
+        ArrayList<BrowserInstance> open;
+        synchronized (browsers) {
+            open = new ArrayList<BrowserInstance>(browsers.values());
+        }
+        for (BrowserInstance browser : open) {
+            browser.saveState();
+            browser.snapshot();
+        }
     }
-    
+
     /**
-     * Inject an object (script or style) into the InAppBrowser WebView.
-     *
-     * This is a helper method for the inject{Script|Style}{Code|File} API calls, which
-     * provides a consistent method for injecting JavaScript code into the document.
-     *
-     * If a wrapper string is supplied, then the source string will be JSON-encoded (adding
-     * quotes) and wrapped using string formatting. (The wrapper string should have a single
-     * '%s' marker)
-     *
-     * @param source      The source object (filename or script/style text) to inject into
-     *                    the document.
-     * @param jsWrapper   A JavaScript string to wrap the source string in, so that the object
-     *                    is properly injected, or null if the source string is JavaScript text
-     *                    which should be executed directly.
+     * Apps may have been installed or removed meanwhile, look up again which schemes they take
      */
-    private void injectDeferredObject(String source, String jsWrapper) {
-        String scriptToInject;
-        if (jsWrapper != null) {
-            org.json.JSONArray jsonEsc = new org.json.JSONArray();
-            jsonEsc.put(source);
-            String jsonRepr = jsonEsc.toString();
-            String jsonSourceString = jsonRepr.substring(1, jsonRepr.length()-1);
-            scriptToInject = String.format(jsWrapper, jsonSourceString);
-        } else {
-            scriptToInject = source;
+    @Override
+    public void onResume(boolean multitasking) {
+        schemeRouter.forgetResolved();
+    }
+
+    /**
+     * Called by AccelBroker when listener is to be shut down.
+     * Stop listener.
+     */
+    public void onDestroy() {
+        closeAll();
+        if (worker != null) {
+            worker.shutdown();
         }
-        final String finalScriptToInject = scriptToInject;
-        this.cordova.getActivity().runOnUiThread(new Runnable() {
-            @SuppressLint("NewApi")
+        if (snapshots != null) {
+            snapshots.shutdown();
+        }
+        if (leakWatcher != null) {
+            leakWatcher.shutdown();
+        }
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+        if (memoryPressure != null) {
+            cordova.getActivity().getApplicationContext().unregisterComponentCallbacks(memoryPressure);
+        }
+        final BrowserInstance discarded;
+        synchronized (browsers) {
+            discarded = parked;
+            parked = null;
+        }
+        runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                //if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
-                // Appgyver throws an error with the edge legacy build if using reference
-                //if (Build.VERSION.SDK_INT < 19) {
-                    // This action will have the side-effect of blurring the currently focused element
-                if (inAppWebView != null && finalScriptToInject != null) inAppWebView.loadUrl("javascript:" + finalScriptToInject);
-                //} else {// More appgyver errors
-                    //inAppWebView.evaluateJavascript(finalScriptToInject, null);
-                //}
+                if (discarded != null) {
+                    discarded.teardown();
+                }
+                if (webViewPool != null) {
+                    webViewPool.clear();
+                }
             }
         });
     }
 
     /**
-     * Put the list of features into a hash map
-     * 
-     * @param optString
-     * @return
+     * Give memory back in stages, from clearing caches to releasing the WebViews of hidden
+     * browsers, see MemoryPressure. Called on the UI thread.
      */
-    private HashMap<String, Boolean> parseFeature(String optString) {
-        if (optString.equals(NULL)) {
-            return null;
-        } else {
-            HashMap<String, Boolean> map = new HashMap<String, Boolean>();
-            StringTokenizer features = new StringTokenizer(optString, ",");
-            StringTokenizer option;
-            while(features.hasMoreElements()) {
-                option = new StringTokenizer(features.nextToken(), "=");
-                if (option.hasMoreElements()) {
-                    String key = option.nextToken();
-                    if (key.equalsIgnoreCase(CLOSE_BUTTON_CAPTION)) {
-                        this.buttonLabel = option.nextToken();
-                    } else {
-                        Boolean value = option.nextToken().equals("no") ? Boolean.FALSE : Boolean.TRUE;
-                        map.put(key, value);
-                    }
-                }
+    private void trimMemory(int stage) {
+        Log.d(LOG_TAG, "Memory pressure, stage " + stage);
+        ArrayList<BrowserInstance> open;
+        synchronized (browsers) {
+            open = new ArrayList<BrowserInstance>(browsers.values());
+        }
+        for (BrowserInstance browser : open) {
+            browser.trimMemory(stage);
+        }
+        if (stage >= MemoryPressure.RELEASE_POOL) {
+            final BrowserInstance discarded;
+            synchronized (browsers) {
+                discarded = parked;
+                parked = null;
             }
-            return map;
+            if (discarded != null) {
+                discarded.teardown();
+            }
+            webViewPool.trim();
         }
     }
 
     /**
-     * Display a new browser with the specified URL.
+     * Close and tear down every open browser at once, without keeping any of them for reuse.
+     * Their snapshots are kept, for the next start.
+     */
+    private void closeAll() {
+        ArrayList<BrowserInstance> open;
+        synchronized (browsers) {
+            open = new ArrayList<BrowserInstance>(browsers.values());
+        }
+        for (BrowserInstance browser : open) {
+            browser.recycleOnClose = false;
+            browser.persist = false;
+            browser.close(true);
+        }
+    }
+
+    /**
+     * Send a diagnostics event about browsers that weren't garbage collected after they closed,
+     * see LeakWatcher. Called on the watcher's thread.
      *
-     * @param url           The url to load.
-     * @param usePhoneGap   Load url in PhoneGap webview
-     * @return              "" if ok, or error message.
+     * @param leaks the leaked objects
      */
-    public String openExternal(String url) {
+    private void reportLeaks(JSONArray leaks) {
+        Log.w(LOG_TAG, "Closed browsers still reachable: " + leaks);
+        CallbackContext callbackContext = diagnosticsCallback;
+        if (callbackContext == null) {
+            return;
+        }
+        try {
+            JSONObject obj = new JSONObject();
+            obj.put("type", "leak");
+            obj.put("leaks", leaks);
+            PluginResult result = new PluginResult(PluginResult.Status.OK, obj);
+            result.setKeepCallback(true);
+            callbackContext.sendPluginResult(result);
+        } catch (JSONException ex) {
+            Log.d(LOG_TAG, "Should never happen");
+        }
+    }
+
+    /**
+     * Register the browser for an open() call. A browser parked by a recycle=yes close is
+     * reused if there is one, otherwise a new one is made. If the open doesn't end up showing
+     * a browser, open() parks the reused one again.
+     *
+     * @param id                The id generated by the JavaScript side, or null to make one up.
+     * @param callbackContext   The open() callback, which receives the browser's events.
+     * @return the browser
+     */
+    private BrowserInstance openBrowser(String id, CallbackContext callbackContext) {
+        BrowserInstance browser;
+        BrowserInstance previous;
+        synchronized (browsers) {
+            if (id == null || id.equals("") || id.equals(NULL)) {
+                id = "native" + (++browserCounter);
+            }
+            browser = parked;
+            parked = null;
+            if (browser == null) {
+                browser = new BrowserInstance(id);
+            } else {
+                browser.id = id;
+            }
+            previous = browsers.remove(id);
+            browsers.put(id, browser);
+        }
+        if (previous != null) {
+            Log.d(LOG_TAG, "Browser id reused, closing the old one: " + id);
+            previous.recycleOnClose = false;
+            previous.closeDialog();
+        }
+        browser.events.open(callbackContext);
+        return browser;
+    }
+
+    /**
+     * Find the browser an action is for. The browser id is the last argument of every action,
+     * its index depends on how many arguments the action takes. When the caller doesn't pass
+     * an id, the most recently opened browser is used.
+     *
+     * @return the browser, or null if it has been closed
+     */
+    private BrowserInstance browserFor(String action, CordovaArgs args) throws JSONException {
+        int index;
+        if (action.startsWith("inject")) {
+            index = 2;
+        } else if (action.equals("waitForSelector")) {
+            index = 4;
+        } else if (action.equals("waitForCondition")) {
+            index = 3;
+        } else if (action.equals("notifyStatus") || action.equals("subscribe")
+                || action.equals("unsubscribe") || action.equals("cancelWait") || action.equals("selectTab")) {
+            index = 1;
+        } else {
+            index = 0;
+        }
+        String id = args.isNull(index) ? null : args.getString(index);
+        synchronized (browsers) {
+            if (id != null) {
+                return browsers.get(id);
+            }
+            BrowserInstance latest = null;
+            for (BrowserInstance browser : browsers.values()) {
+                latest = browser;
+            }
+            return latest;
+        }
+    }
+
+    /**
+     * Forget a browser that has been closed
+     */
+    private void removeBrowser(BrowserInstance browser) {
+        synchronized (browsers) {
+            if (browsers.get(browser.id) == browser) {
+                browsers.remove(browser.id);
+            }
+        }
+    }
+
+    /**
+     * Keep a recycled browser for the next open, replacing any browser parked before it
+     */
+    private void park(BrowserInstance browser) {
+        final BrowserInstance discarded;
+        synchronized (browsers) {
+            discarded = parked;
+            parked = browser;
+        }
+        if (discarded != null && discarded != browser) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    discarded.teardown();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the ids of the browsers that are currently open
+     */
+    public Set<String> getBrowserIds() {
+        synchronized (browsers) {
+            return Collections.unmodifiableSet(new LinkedHashSet<String>(browsers.keySet()));
+        }
+    }
+
+    /**
+     * Display a new browser with the specified URL.
+     *
+     * @param url           The url to load.
+     * @param usePhoneGap   Load url in PhoneGap webview
+     * @return              "" if ok, or error message.
+     */
+    public String openExternal(String url) {
         try {
             Intent intent = null;
             intent = new Intent(Intent.ACTION_VIEW);
@@ -401,607 +1054,1776 @@ public class InAppBrowserBeta extends CordovaPlugin {
     }
 
     /**
-     * Hides the dialog but does NOT dismiss it
+     * Read an integer preference from the app settings, falling back to the default
+     * if it is missing or not a number.
      */
-    public void hideDialog() {
-        this.cordova.getActivity().runOnUiThread(new Runnable() {
+    private int getAppSettingInt(String name, int defaultValue) {
+        Bundle appSettings = cordova.getActivity().getIntent().getExtras();
+        Object value = appSettings == null ? null : appSettings.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            Log.d(LOG_TAG, "Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Build a WebView with all the settings that do not depend on a particular open() call.
+     * Used by the WebView pool, so this must be called on the UI thread.
+     *
+     * The JavaScript interfaces are bound later, by the browser that takes the WebView.
+     *
+     * @return WebView
+     */
+    private WebView createWebView() {
+        WebView view = new WebView(cordova.getActivity());
+        view.setLayoutParams(new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+        view.setWebChromeClient(new InAppChromeClientBeta(webView));
+        WebSettings settings = view.getSettings();
+        settings.setJavaScriptEnabled(true);
+        settings.setJavaScriptCanOpenWindowsAutomatically(true);
+        settings.setBuiltInZoomControls(true);
+        settings.setPluginState(android.webkit.WebSettings.PluginState.ON);
+
+        //Toggle whether this is enabled or not!
+        Bundle appSettings = cordova.getActivity().getIntent().getExtras();
+        boolean enableDatabase = appSettings == null ? true : appSettings.getBoolean("InAppBrowserStorageEnabled", true);
+        if (enableDatabase) {
+            String databasePath = cordova.getActivity().getApplicationContext().getDir("inAppBrowserDB", Context.MODE_PRIVATE).getPath();
+            settings.setDatabasePath(databasePath);
+            settings.setDatabaseEnabled(true);
+        }
+        settings.setDomStorageEnabled(true);
+        settings.setLoadWithOverviewMode(true);
+        settings.setUseWideViewPort(true);
+        view.setId(6);
+        view.setWebViewClient(new WebViewClient() {
+            // Only until a browser takes the WebView from the pool and sets its own client,
+            // and only called from Oreo on
             @Override
-            public void run() {
-                if (dialog != null) dialog.hide();
+            @SuppressLint("NewApi")
+            public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+                webViewPool.discard(view);
+                return true;
             }
         });
+        return view;
     }
 
     /**
-     * Closes the dialog
+     * One browser window: its dialog, engine and toolbar, the open() callback its events go to,
+     * and its pending waits. Several can be open at once, each is keyed by the id that the
+     * JavaScript InAppBrowserBeta object passes with every action.
      */
-    public void closeDialog() {
-        final WebView childView = this.inAppWebView;
-        // The JS protects against multiple calls, so this should happen only when
-        // closeDialog() is called by other native code.
-        if (childView == null) {
-            return;
+    public class BrowserInstance {
+        String id;
+        private InAppBrowserBetaDialog dialog;
+        // The showing page, a WebViewEngine on a device
+        private BrowserEngine engine;
+        private EditText edittext;
+        private RelativeLayout toolbar;
+        private boolean showLocationBar = true;
+        private boolean openWindowHidden = false;
+        // Hidden and throttled, see setBackground(), only touched on the UI thread
+        private boolean background = false;
+        // The WebView was destroyed under memory pressure, see release() and restore()
+        private volatile boolean released = false;
+        private Bundle releasedState;
+        private String releasedUrl;
+        // The WebView state recover() starts from, saved when a renderer loss gets likely,
+        // see saveState(). Without a tab bar only, BrowserTabs saves its own.
+        private Bundle savedState;
+        private ViewGroup releasedFrom;
+        private int releasedTab = -1;
+        // The options below are set by showWebPage() on the worker thread and read on the UI
+        // thread, also after the task it posts
+        private volatile boolean recycleOnClose = false;
+        private volatile boolean recycled = false;
+        private volatile boolean resourceTiming = false;
+        // Saved to disk under the URL it was opened with, see snapshot()
+        private volatile boolean persist = false;
+        private volatile String persistUrl;
+        private volatile HashMap<String, Boolean> persistFeatures;
+        // Of a browser restored from a snapshot: the pages before the restored one, newest
+        // last, for goBack() to load once the engine's own history runs out
+        private final ArrayList<String> restoredBack = new ArrayList<String>();
+        // The restored page, until it has loaded and been scrolled to where it was
+        private PageState restoring;
+        // Set when goBack() loaded one of restoredBack, whose history has to go on load
+        private boolean backToRestored = false;
+        // The page of a prefetch=yes open, until its engine takes it or a page loads without it
+        private volatile PagePrefetcher.Prefetch prefetch;
+        // SystemClock.elapsedRealtime() of a renderer loss while recover() builds the new engine, else 0
+        private long recoveryStart = 0;
+        private boolean recoveryCrashed = false;
+        private int eventBatchWindow = 0;
+        // For the UI tasks that replace a pending one of their kind, see UiTaskQueue
+        private final Object visibilityKey = new Object();
+        private final Object notifyStatusKey = new Object();
+        private final Object tabKey = new Object();
+        private String buttonLabel = "Done";
+        // Also read on the engines' threads, see interceptRequest()
+        private volatile boolean clearAllCache= false;
+        private volatile boolean clearSessionCache=false;
+        private boolean showTabBar = false;
+        private int tabBarInit = 0;
+        // Only when the tab bar is shown
+        private BrowserTabs tabs;
+        private boolean tabBarReady = false;
+        private final JavascriptInterfaceRegistry interfaceRegistry = new JavascriptInterfaceRegistry();
+        private final HashMap<String, PendingWait> pendingWaits = new HashMap<String, PendingWait>();
+        final EventChannel events = new EventChannel(handler);
+        // SystemClock.elapsedRealtime() of the open() call, 0 once its first page has loaded
+        volatile long openedAt = 0;
+
+        BrowserInstance(String id) {
+            this.id = id;
+            interfaceRegistry.register(LOADED_STATUS_INTERFACE, new LoadedStatusInterface(this));
+            interfaceRegistry.register(NOTIFY_STATUS_INTERFACE, new NotifyStatusInterface(this));
         }
 
-        this.cordova.getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                childView.setWebViewClient(new WebViewClient() {
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @param now the current SystemClock.elapsedRealtime()
+         * @return the time since open() the first time this is called after it, -1 after that
+         */
+        private long takeOpenTime(long now) {
+            long opened = openedAt;
+            openedAt = 0;
+            return opened == 0 ? -1 : now - opened;
+        }
+
+        /**
+         * Record how long the dialog took to come up, must be called right after it is shown
+         */
+        private void recordShown(String url) {
+            long opened = openedAt;
+            if (opened != 0) {
+                metrics.record(NavigationMetrics.OPEN_TO_SHOW, url, SystemClock.elapsedRealtime() - opened);
+            }
+        }
+
+        /**
+         * Start waiting for a condition in the InAppBrowser page. The condition is re-checked on every
+         * DOM mutation, and again after each navigation, until it holds or the timeout expires.
+         *
+         * @param id                Identifies the wait for cancelWait(), replacing any earlier wait with the same id.
+         * @param test              A JavaScript function expression whose non-null result resolves the wait.
+         * @param timeout           Milliseconds before the wait fails, or 0 to wait forever.
+         * @param callbackContext   Receives the result, or null to send it as a loadedStatus event.
+         */
+        private void startWait(String id, String test, int timeout, CallbackContext callbackContext) {
+            final String quotedId = InjectionTemplate.quote(id);
+            final PendingWait wait = new PendingWait(this, id, String.format(WAIT_SCRIPT, quotedId, test), callbackContext);
+            final PendingWait previous;
+            synchronized (pendingWaits) {
+                previous = pendingWaits.put(id, wait);
+            }
+            if (previous != null) {
+                cancelTimeout(previous);
+            }
+            if (timeout > 0) {
+                scheduleTimeout(wait, timeout);
+            }
+            runOnUiThread("wait", new Runnable() {
+                @Override
+                public void run() {
+                    if (engine != null) {
+                        addCallbackInterface(engine);
+                        engine.evaluateJavascript(wait.script, null);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Stop a pending wait without resolving it
+         *
+         * @param id the id passed to startWait()
+         */
+        private void cancelWait(String id) {
+            final PendingWait wait = removeWait(id);
+            if (wait == null) {
+                return;
+            }
+            cancelTimeout(wait);
+            runOnUiThread("cancelWait", new Runnable() {
+                @Override
+                public void run() {
+                    if (engine != null) {
+                        engine.evaluateJavascript(String.format(CANCEL_WAIT_SCRIPT, InjectionTemplate.quote(wait.id)), null);
+                    }
+                }
+            });
+            if (wait.callbackContext != null) {
+                wait.callbackContext.error("cancelled");
+            }
+        }
+
+        /**
+         * Fail every pending wait, used when the page they were waiting on goes away for good
+         *
+         * @param reason the error message sent to each wait's callback
+         */
+        private void failWaits(String reason) {
+            ArrayList<PendingWait> waits;
+            synchronized (pendingWaits) {
+                waits = new ArrayList<PendingWait>(pendingWaits.values());
+                pendingWaits.clear();
+            }
+            for (PendingWait wait : waits) {
+                cancelTimeout(wait);
+                if (wait.callbackContext != null) {
+                    wait.callbackContext.error(reason);
+                }
+            }
+        }
+
+        private PendingWait removeWait(String id) {
+            synchronized (pendingWaits) {
+                return pendingWaits.remove(id);
+            }
+        }
+
+        /**
+         * Re-inject the still pending waits after a page load, the previous page took their observers with it
+         *
+         * @param view the engine that finished loading
+         */
+        private void rearmWaits(BrowserEngine view) {
+            synchronized (pendingWaits) {
+                for (PendingWait wait : pendingWaits.values()) {
+                    view.evaluateJavascript(wait.script, null);
+                }
+            }
+        }
+
+        /**
+         * Inject an object (script or style) into the InAppBrowser page.
+         *
+         * This is a helper method for the inject{Script|Style}{Code|File} API calls, which
+         * provides a consistent method for injecting JavaScript code into the document.
+         *
+         * If a wrapper is supplied, then the source string will be quoted as a JavaScript string
+         * and rendered into the wrapper, see InjectionTemplate.
+         *
+         * @param source      The source object (filename or script/style text) to inject into
+         *                    the document.
+         * @param jsWrapper   A template to wrap the source string in, so that the object
+         *                    is properly injected, or null if the source string is JavaScript text
+         *                    which should be executed directly.
+         * @param callbackId  The callback the wrapper reports back to, if it does.
+         */
+        private void injectDeferredObject(String source, InjectionTemplate jsWrapper, String callbackId) {
+            String scriptToInject;
+            if (jsWrapper != null) {
+                scriptToInject = jsWrapper.render(source, callbackId);
+            } else {
+                scriptToInject = source;
+            }
+            final String finalScriptToInject = scriptToInject;
+            runOnUiThread("inject", new Runnable() {
+                @Override
+                public void run() {
+                    if (engine != null && finalScriptToInject != null) {
+                        engine.evaluateJavascript(finalScriptToInject, null);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Run a wrapped source object in the InAppBrowser page with evaluateJavascript(), and send
+         * the script's value straight to the callback, without the prompt() round trip.
+         * Only use this when canEvaluateJavascript() is true.
+         *
+         * The value is expected to be a JSON array, as SCRIPT_CODE_RESULT produces, anything else
+         * (such as the undefined value of the style wrappers) is sent as an empty array.
+         *
+         * @param source            The source object (script/style text or URL) to inject.
+         * @param jsWrapper         A template to wrap the source string in.
+         * @param callbackContext   Receives the result.
+         */
+        private void evaluateDeferredObject(String source, InjectionTemplate jsWrapper, final CallbackContext callbackContext) {
+            final String scriptToInject = jsWrapper.render(source, null);
+            final ValueCallback<String> resultCallback = new ValueCallback<String>() {
+                @Override
+                public void onReceiveValue(String value) {
+                    PluginResult scriptResult;
+                    if (value == null || !value.startsWith("[")) {
+                        scriptResult = new PluginResult(PluginResult.Status.OK, new JSONArray());
+                    } else {
+                        try {
+                            scriptResult = new PluginResult(PluginResult.Status.OK, new JSONArray(value));
+                        } catch (JSONException e) {
+                            scriptResult = new PluginResult(PluginResult.Status.JSON_EXCEPTION, e.getMessage());
+                        }
+                    }
+                    callbackContext.sendPluginResult(scriptResult);
+                }
+            };
+            runOnUiThread("inject", new Runnable() {
+                @Override
+                public void run() {
+                    if (engine != null) {
+                        engine.evaluateJavascript(scriptToInject, resultCallback);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Put the list of features into a hash map
+         *
+         * @param optString
+         * @return
+         */
+        HashMap<String, Boolean> parseFeature(String optString) {
+            buttonLabel = "Done";
+            eventBatchWindow = 0;
+            tabBarInit = 0;
+            if (optString.equals(NULL)) {
+                return null;
+            } else {
+                HashMap<String, Boolean> map = new HashMap<String, Boolean>();
+                StringTokenizer features = new StringTokenizer(optString, ",");
+                StringTokenizer option;
+                while(features.hasMoreElements()) {
+                    option = new StringTokenizer(features.nextToken(), "=");
+                    if (option.hasMoreElements()) {
+                        String key = option.nextToken();
+                        if (key.equalsIgnoreCase(CLOSE_BUTTON_CAPTION)) {
+                            this.buttonLabel = option.nextToken();
+                        } else if (key.equalsIgnoreCase(BATCH_WINDOW)) {
+                            try {
+                                this.eventBatchWindow = Integer.parseInt(option.nextToken());
+                            } catch (NumberFormatException e) {
+                                Log.d(LOG_TAG, "Ignoring invalid " + BATCH_WINDOW);
+                            }
+                        } else if (key.equalsIgnoreCase(TAB_BAR_INIT)) {
+                            try {
+                                this.tabBarInit = Integer.parseInt(option.nextToken());
+                            } catch (NumberFormatException e) {
+                                Log.d(LOG_TAG, "Ignoring invalid " + TAB_BAR_INIT);
+                            }
+                        } else {
+                            Boolean value = option.nextToken().equals("no") ? Boolean.FALSE : Boolean.TRUE;
+                            map.put(key, value);
+                        }
+                    }
+                }
+                return map;
+            }
+        }
+
+        /**
+         * Hides the dialog but does NOT dismiss it
+         */
+        public void hideDialog() {
+            runOnUiThread("hide", visibilityKey, new Runnable() {
+                @Override
+                public void run() {
+                    if (dialog != null) dialog.hide();
+                    setBackground(true);
+                }
+            });
+        }
+
+        /**
+         * Throttle the page while the dialog is hidden, or bring it back. Pauses the engine and
+         * lowers its renderer's priority, and runs BACKGROUND_SCRIPT in the page, which pauses
+         * our notify and wait polling and fires visibilitychange. The page's own timers keep
+         * running, WebView can only pause those for every WebView of the app at once.
+         * Must be called on the UI thread.
+         *
+         * @param hidden true when the dialog was hidden, false when it was shown
+         */
+        private void setBackground(boolean hidden) {
+            if (background == hidden) {
+                return;
+            }
+            background = hidden;
+            if (engine == null) {
+                return;
+            }
+            if (hidden) {
+                saveState();
+                engine.evaluateJavascript(String.format(BACKGROUND_SCRIPT, true), null);
+                engine.onPause();
+            } else {
+                engine.onResume();
+                engine.evaluateJavascript(String.format(BACKGROUND_SCRIPT, false), null);
+            }
+        }
+
+        /**
+         * Give memory back, see MemoryPressure. Only the caches of a showing browser are
+         * touched. Must be called on the UI thread.
+         *
+         * @param stage how far to go
+         */
+        private void trimMemory(int stage) {
+            if (engine == null) {
+                return;
+            }
+            // Renderers go first when memory runs out
+            saveState();
+            engine.clearCache(false);
+            if (!background || dialog == null) {
+                return;
+            }
+            if (stage >= MemoryPressure.DROP_HISTORY) {
+                engine.clearHistory();
+            }
+            if (stage >= MemoryPressure.RELEASE_HIDDEN) {
+                release();
+            }
+        }
+
+        /**
+         * Save the state recover() brings the pages back from. Saving it is too slow to do on
+         * every load, so it is done when the browser is hidden, the app paused or memory
+         * short, when renderers get killed. Must be called on the UI thread.
+         */
+        private void saveState() {
+            if (tabs != null) {
+                tabs.saveState();
+                return;
+            }
+            if (!(engine instanceof WebViewEngine)) {
+                return;
+            }
+            Bundle state = new Bundle();
+            savedState = ((WebViewEngine) engine).getView().saveState(state) != null ? state : null;
+        }
+
+        /**
+         * Save a persist=yes browser for the next open() of its URL, see BrowserSnapshots.
+         * Must be called on the UI thread.
+         */
+        private void snapshot() {
+            if (!persist || !(engine instanceof WebViewEngine)) {
+                return;
+            }
+            PageState page = PageState.capture(getWebView());
+            if (page == null) {
+                return;
+            }
+            if (!restoredBack.isEmpty()) {
+                // Still reachable with goBack()
+                ArrayList<String> history = new ArrayList<String>(restoredBack);
+                history.addAll(page.history);
+                page = new PageState(history, page.scrollX, page.scrollY);
+            }
+            JSONObject saved = new JSONObject();
+            try {
+                for (Map.Entry<String, Boolean> feature : persistFeatures.entrySet()) {
+                    if (!HIDDEN.equals(feature.getKey())) {
+                        saved.put(feature.getKey(), feature.getValue().booleanValue());
+                    }
+                }
+            } catch (JSONException ex) {
+                Log.d(LOG_TAG, "Should never happen");
+            }
+            snapshots.save(new BrowserSnapshots.Snapshot(persistUrl, background, saved, page));
+        }
+
+        /**
+         * Load the page of a snapshot in a new engine. Its history is kept for goBack(), and it
+         * is scrolled to where it was once it has loaded, see onRestoredPageFinished().
+         */
+        private void restorePage(BrowserEngine view, PageState page) {
+            restoredBack.addAll(page.getBack());
+            restoring = page;
+            view.loadUrl(page.getUrl());
+        }
+
+        /**
+         * A page of the showing engine has loaded. Must be called on the UI thread.
+         */
+        private void onRestoredPageFinished(BrowserEngine view) {
+            if (backToRestored) {
+                // Only restoredBack is behind this page
+                backToRestored = false;
+                view.clearHistory();
+            }
+            PageState page = restoring;
+            restoring = null;
+            if (page != null && (page.scrollX != 0 || page.scrollY != 0) && view instanceof WebViewEngine) {
+                ((WebViewEngine) view).getView().scrollTo(page.scrollX, page.scrollY);
+            }
+        }
+
+        /**
+         * The renderer of one of the browser's engines is gone. Put a new engine, from the pool,
+         * where the dead one was and bring its page back from the last saved state, see
+         * saveState(), then load the page last started if it has moved on since. rendererrecovered fires once the page has loaded again. Waits carry on, they
+         * are rearmed by that load. Must be called on the UI thread.
+         *
+         * @param dead      the engine that lost its renderer
+         * @param client    the dead engine's client, with the page it last started
+         * @param crashed   false if the system killed the renderer for memory
+         */
+        private void recover(BrowserEngine dead, InAppBrowserBetaClient client, boolean crashed) {
+            Log.d(LOG_TAG, "Renderer of browser " + id + (crashed ? " crashed" : " was killed") + ", recovering");
+            recoveryStart = SystemClock.elapsedRealtime();
+            recoveryCrashed = crashed;
+            if (tabs != null && client.tab >= 0) {
+                WebViewEngine view = tabs.recover(client.tab, client.lastUrl);
+                if (view != null) {
+                    engine = view;
+                }
+            } else if (dead == engine && dead instanceof WebViewEngine) {
+                WebView old = ((WebViewEngine) dead).getView();
+                ViewGroup parent = (ViewGroup) old.getParent();
+                int index = parent == null ? -1 : parent.indexOfChild(old);
+                destroyDead(dead);
+                WebViewEngine view = new WebViewEngine(webViewPool.acquire());
+                view.setClient(new InAppBrowserBetaClient(webView, edittext, this));
+                interfaceRegistry.bindAll(view);
+                if (parent != null) {
+                    parent.addView(view.getView(), index, old.getLayoutParams());
+                }
+                BrowserTabs.restore(view, savedState, client.lastUrl);
+                engine = view;
+            } else if (dead == engine && engines != null) {
+                // Headless engines have no state to save, only the page to load again
+                destroyDead(dead);
+                BrowserEngine view = engines.create();
+                view.setClient(new InAppBrowserBetaClient(webView, null, this));
+                interfaceRegistry.bindAll(view);
+                if (client.lastUrl != null) {
+                    view.loadUrl(client.lastUrl);
+                }
+                engine = view;
+            } else {
+                // Not showing any more, nothing to bring back
+                destroyDead(dead);
+            }
+            recoveryStart = 0;
+            if (background && engine != null) {
+                engine.onPause();
+            }
+        }
+
+        /**
+         * Take an engine whose renderer is gone out of its layout and destroy it
+         */
+        private void destroyDead(BrowserEngine dead) {
+            if (dead instanceof WebViewEngine) {
+                WebView view = ((WebViewEngine) dead).getView();
+                if (view.getParent() != null) {
+                    ((ViewGroup) view.getParent()).removeView(view);
+                }
+            }
+            interfaceRegistry.unbindAll(dead);
+            dead.destroy();
+        }
+
+        /**
+         * Destroy the WebViews of the hidden browser, keeping what's needed to rebuild them on
+         * show. Waits fail, their page is gone.
+         */
+        private void release() {
+            Log.d(LOG_TAG, "Releasing the WebView of hidden browser " + id);
+            recycleOnClose = false;
+            releasedUrl = engine.getUrl();
+            if (tabs != null) {
+                releasedTab = tabs.suspend();
+            } else {
+                WebView view = getWebView();
+                releasedState = new Bundle();
+                if (view.saveState(releasedState) == null) {
+                    releasedState = null;
+                }
+                releasedFrom = (ViewGroup) view.getParent();
+                if (releasedFrom != null) {
+                    releasedFrom.removeView(view);
+                }
+                engine.stopLoading();
+                engine.setClient(null);
+                interfaceRegistry.unbindAll(engine);
+                engine.destroy();
+            }
+            engine = null;
+            released = true;
+            failWaits("released");
+        }
+
+        /**
+         * Rebuild the WebViews of a released browser where they left off, before showing it.
+         * Must be called on the UI thread.
+         */
+        private void restore() {
+            if (!released) {
+                return;
+            }
+            released = false;
+            // Without saved state, the page is loaded again, or a blank one if there was none
+            String url = releasedUrl != null ? releasedUrl : "about:blank";
+            if (tabs != null) {
+                int tab = Math.max(0, releasedTab);
+                engine = tabs.select(tab, null);
+                if (engine == null) {
+                    // A tab without a url of its own, showing the page open() asked for
+                    engine = tabs.select(tab, url);
+                }
+            } else {
+                WebViewEngine view = new WebViewEngine(webViewPool.acquire());
+                view.setClient(new InAppBrowserBetaClient(webView, edittext, this));
+                interfaceRegistry.bindAll(view);
+                if (releasedFrom != null) {
+                    releasedFrom.addView(view.getView());
+                }
+                if (releasedState == null || view.getView().restoreState(releasedState) == null) {
+                    view.loadUrl(url);
+                }
+                engine = view;
+            }
+            engine.onPause();
+            releasedState = null;
+            releasedUrl = null;
+            releasedFrom = null;
+        }
+
+        /**
+         * Closes the dialog
+         */
+        public void closeDialog() {
+            close(false);
+        }
+
+        /**
+         * Close the browser and tear it down, see teardown(). Decided on the UI thread, where
+         * the engine is set, so that a close right after an open closes what the open built.
+         *
+         * @param now   true to tear down straight away, for onReset() and onDestroy(), instead of
+         *              letting the page go blank before the dialog goes
+         */
+        private void close(final boolean now) {
+            runOnUiThread("close", new Runnable() {
+                @Override
+                public void run() {
+                    closeOnUiThread(now);
+                }
+            });
+        }
+
+        private void closeOnUiThread(boolean now) {
+            final BrowserEngine childView = this.engine;
+            // The JS protects against multiple calls, so this should happen only when
+            // closeDialog() is called by other native code.
+            if ((childView == null && !released) || recycled) {
+                return;
+            }
+            removeBrowser(this);
+            if (persist) {
+                persist = false;
+                snapshots.delete(persistUrl);
+            }
+
+            if (childView != null && recycleOnClose) {
+                recycleDialog(childView);
+            } else if (now || childView == null || engines != null) {
+                // Also when released under memory pressure, or headless, with no page to wait for
+                teardown();
+            } else {
+                if (tabs != null) {
+                    // Only the showing tab is left to go blank while the dialog closes
+                    tabs.releaseAll(childView);
+                }
+                childView.setClient(new BrowserEngine.Client() {
                     // NB: wait for about:blank before dismissing
-                    public void onPageFinished(WebView view, String url) {
-                        if (dialog != null) {
-                            dialog.dismiss();
+                    @Override
+                    public void onPageFinished(BrowserEngine view, String url) {
+                        teardown();
+                    }
+
+                    @Override
+                    public boolean onRenderProcessGone(BrowserEngine view, boolean crashed) {
+                        // about:blank won't come
+                        if (tabs == null) {
+                            destroyDead(view);
+                            engine = null;
                         }
+                        teardown();
+                        return true;
                     }
                 });
 
                 //dialog.dismiss();
                 //handler.sendEmptyMessage(0);
 
-                // NB: From SDK 19: "If you call methods on WebView from any thread 
+                // NB: From SDK 19: "If you call methods on WebView from any thread
                 // other than your app's UI thread, it can cause unexpected results."
                 // http://developer.android.com/guide/webapps/migrating.html#Threads
                 childView.loadUrl("about:blank");
             }
-        });
 
-        try {
-            JSONObject obj = new JSONObject();
-            obj.put("type", EXIT_EVENT);
-            sendUpdate(obj, false);
-        } catch (JSONException ex) {
-            Log.d(LOG_TAG, "Should never happen");
+            failWaits("closed");
+
+            try {
+                JSONObject obj = new JSONObject();
+                obj.put("type", EXIT_EVENT);
+                sendUpdate(obj, false);
+            } catch (JSONException ex) {
+                Log.d(LOG_TAG, "Should never happen");
+            }
+        }
+
+        /**
+         * Closes the dialog but keeps it, its view tree and its WebView around for the next open.
+         * The WebView is reset to about:blank with an empty history and no JavaScript interfaces.
+         * Must be called on the UI thread.
+         *
+         * @param childView the engine of the dialog being closed
+         */
+        private void recycleDialog(BrowserEngine childView) {
+            recycled = true;
+            park(this);
+            childView.stopLoading();
+            interfaceRegistry.unbindAll(childView);
+            childView.setClient(new BrowserEngine.Client() {
+                // NB: wait for about:blank before dismissing
+                @Override
+                public void onPageFinished(BrowserEngine view, String url) {
+                    view.clearHistory();
+                    if (dialog != null) {
+                        dialog.dismiss();
+                    }
+                }
+
+                @Override
+                public boolean onRenderProcessGone(BrowserEngine view, boolean crashed) {
+                    // Nothing left to reuse, the next open builds a new dialog
+                    destroyDead(view);
+                    if (engine == view) {
+                        engine = null;
+                    }
+                    if (dialog != null) {
+                        dialog.dismiss();
+                    }
+                    return true;
+                }
+            });
+            childView.loadUrl("about:blank");
+        }
+
+        /**
+         * @param url the url an engine is about to fetch, called on one of its threads
+         * @return the prefetched response if it's the prefetched page, otherwise null
+         */
+        private WebResourceResponse takePrefetch(String url) {
+            PagePrefetcher.Prefetch fetched = prefetch;
+            if (fetched == null || !fetched.matches(url)) {
+                return null;
+            }
+            WebResourceResponse response = fetched.take(url);
+            if (fetched.isTaken() && prefetch == fetched) {
+                prefetch = null;
+            }
+            return response;
+        }
+
+        /**
+         * Give up on the prefetched page, if it hasn't been taken
+         */
+        private void dropPrefetch() {
+            PagePrefetcher.Prefetch fetched = prefetch;
+            prefetch = null;
+            if (fetched != null) {
+                fetched.cancel();
+            }
+        }
+
+        /**
+         * Destroy what the browser built, its engines with their interfaces and its dialog, and
+         * let go of all of it, so that nothing of a closed browser stays reachable. Must be
+         * called on the UI thread.
+         */
+        private void teardown() {
+            dropPrefetch();
+            if (leakWatcher != null) {
+                leakWatcher.watch(this, "browser", id);
+            }
+            destroyViews();
+        }
+
+        /**
+         * Destroy the engines and the dialog of the browser and drop its references to them,
+         * the browser itself stays usable. Must be called on the UI thread.
+         */
+        private void destroyViews() {
+            if (leakWatcher != null) {
+                if (dialog != null) {
+                    leakWatcher.watch(dialog, "dialog", id);
+                }
+                if (engine instanceof WebViewEngine) {
+                    leakWatcher.watch(getWebView(), "webview", id);
+                }
+            }
+            if (tabs != null) {
+                // The engine is one of the tabs'
+                tabs.releaseAll(null);
+                tabs = null;
+                engine = null;
+            }
+            if (engine != null) {
+                if (engine instanceof WebViewEngine) {
+                    WebView view = getWebView();
+                    if (view.getParent() != null) {
+                        ((ViewGroup) view.getParent()).removeView(view);
+                    }
+                }
+                engine.setClient(null);
+                engine.stopLoading();
+                interfaceRegistry.unbindAll(engine);
+                engine.destroy();
+                engine = null;
+            }
+            if (dialog != null) {
+                dialog.setInAppBroswer(null);
+                dialog.dismiss();
+                dialog = null;
+            }
+            edittext = null;
+            toolbar = null;
+            released = false;
+            releasedState = null;
+            savedState = null;
+            releasedFrom = null;
+        }
+
+        /**
+         * Checks to see if it is possible to go back one page in history, then does so.
+         */
+        private void goBack() {
+            if (this.engine.canGoBack()) {
+                this.engine.goBack();
+            } else if (!restoredBack.isEmpty()) {
+                backToRestored = true;
+                this.engine.loadUrl(restoredBack.remove(restoredBack.size() - 1));
+            }
+        }
+
+        /**
+         * Checks to see if it is possible to go forward one page in history, then does so.
+         */
+        private void goForward() {
+            if (this.engine.canGoForward()) {
+                this.engine.goForward();
+            }
+        }
+
+        /**
+         * Route a URL for another app or for the JavaScript side, see SchemeRouter. Engines only
+         * pass the URLs that pages navigate to through shouldOverrideUrlLoading(), so the URLs
+         * the plugin loads itself, from open() and the location bar, are routed here first.
+         * Safe on any thread, open() routes its URL on the worker before anything is shown.
+         *
+         * @param url       the URL about to be loaded
+         * @param tab       the tab it is for, -1 without a tab bar
+         * @param opened    true for the URL of open(), whose customscheme event is sent even
+         *                  though the JavaScript side can't have subscribed to it yet
+         * @return true if the URL was routed and shouldn't be loaded
+         */
+        private boolean route(String url, int tab, boolean opened) {
+            int routed = schemeRouter.route(engines == null ? cordova.getActivity() : null, url);
+            if (routed == SchemeRouter.DELIVER) {
+                if (opened || events.wants(CUSTOM_SCHEME_EVENT)) {
+                    try {
+                        JSONObject obj = new JSONObject();
+                        obj.put("type", CUSTOM_SCHEME_EVENT);
+                        obj.put("url", url);
+                        if (tab >= 0) {
+                            obj.put("tab", tab);
+                        }
+
+                        if (opened) {
+                            // Past the subscription check of sendUpdate()
+                            PluginResult result = new PluginResult(PluginResult.Status.OK, obj);
+                            result.setKeepCallback(true);
+                            events.sendPluginResult(result);
+                        } else {
+                            sendUpdate(obj, true);
+                        }
+                    } catch (JSONException ex) {
+                        Log.d(LOG_TAG, "Should never happen");
+                    }
+                }
+                return true;
+            }
+            return routed == SchemeRouter.HANDLED;
         }
-    }
 
-    /**
-     * Checks to see if it is possible to go back one page in history, then does so.
-     */
-    private void goBack() {
-        if (this.inAppWebView.canGoBack()) {
-            this.inAppWebView.goBack();
+        /**
+         * Navigate to the new page
+         *
+         * @param url to load
+         */
+        private void navigate(String url) {
+            InputMethodManager imm = (InputMethodManager)cordova.getActivity().getSystemService(Context.INPUT_METHOD_SERVICE);
+            imm.hideSoftInputFromWindow(edittext.getWindowToken(), 0);
+
+            if (route(url, tabs != null ? tabs.getSelected() : -1, false)) {
+                return;
+            }
+            if (!url.startsWith("http") && !url.startsWith("file:")) {
+                this.engine.loadUrl("http://" + url);
+            } else {
+                this.engine.loadUrl(url);
+            }
+            getWebView().requestFocus();
         }
-    }
 
-    /**
-     * Checks to see if it is possible to go forward one page in history, then does so.
-     */
-    private void goForward() {
-        if (this.inAppWebView.canGoForward()) {
-            this.inAppWebView.goForward();
+        /**
+         * @return the WebView of the showing page, only for the dialog, which headless browsers don't have
+         */
+        private WebView getWebView() {
+            return ((WebViewEngine) engine).getView();
         }
-    }
 
-    /**
-     * Navigate to the new page
-     *
-     * @param url to load
-     */
-    private void navigate(String url) {
-        InputMethodManager imm = (InputMethodManager)this.cordova.getActivity().getSystemService(Context.INPUT_METHOD_SERVICE);
-        imm.hideSoftInputFromWindow(edittext.getWindowToken(), 0);
 
-        if (!url.startsWith("http") && !url.startsWith("file:")) {
-            this.inAppWebView.loadUrl("http://" + url);
-        } else {
-            this.inAppWebView.loadUrl(url);
+        /**
+         * Should we show the location bar?
+         *
+         * @return boolean
+         */
+        private boolean getShowLocationBar() {
+            return this.showLocationBar;
         }
-        this.inAppWebView.requestFocus();
-    }
 
+        private boolean getShowTabBar() {
+            return this.showTabBar;
+        }
 
-    /**
-     * Should we show the location bar?
-     *
-     * @return boolean
-     */
-    private boolean getShowLocationBar() {
-        return this.showLocationBar;
-    }
+        private int getTabBarInit() {
+            return this.tabBarInit;
+        }
 
-    private boolean getShowTabBar() {
-        return false;
-        //return this.showTabBar;
-    }
+        /**
+         * Select a tab from native code or the selectTab action, as if it had been tapped.
+         * Must be called on the UI thread.
+         *
+         * @param index the tab
+         */
+        private void showTab(int index) {
+            if (tabs == null || dialog == null || index < 0 || index >= tabs.size()) {
+                return;
+            }
+            // Goes through the tab listener, see selectTab()
+            dialog.getActionBar().setSelectedNavigationItem(index);
+        }
 
-    private int getTabBarInit() {
-        return this.tabBarInit;
-    }
+        /**
+         * Switch the browser to a tab's WebView, building it if need be. Must be called on the UI thread.
+         *
+         * @param index the tab
+         * @return false if the tab has no page of its own, the current one stays up then
+         */
+        private boolean selectTab(int index) {
+            WebViewEngine view = tabs.select(index, null);
+            if (view == null) {
+                return false;
+            }
+            released = false;
+            if (view != engine) {
+                engine = view;
+                edittext.setText(view.getUrl());
+                view.getView().requestFocus();
+                // The waits are for whichever page is showing
+                rearmWaits(view);
+            }
+            return true;
+        }
 
-    private InAppBrowserBeta getInAppBrowser(){
-        return this;
-    }
+        /**
+         * Forget what the UI thread knew of the last page of a recycled browser, before an open
+         * loads its own. Must be called on the UI thread.
+         */
+        private void resetPageState() {
+            savedState = null;
+            restoredBack.clear();
+            restoring = null;
+            backToRestored = false;
+            recoveryStart = 0;
+            recoveryCrashed = false;
+        }
 
-    /**
-     * Display a new browser with the specified URL.
-     *
-     * @param url           The url to load.
-     * @param jsonObject
-     */
-    public String showWebPage(final String url, HashMap<String, Boolean> features) {
-        // Determine if we should hide the location bar.
-        showLocationBar = true;
-        openWindowHidden = false;
-        if (features != null) {
-            Boolean show = features.get(LOCATION);
-            if (show != null) {
-                showLocationBar = show.booleanValue();
-            }
-            Boolean hidden = features.get(HIDDEN);
-            if (hidden != null) {
-                openWindowHidden = hidden.booleanValue();
-            }
-            /*Boolean tabbar = features.get("tabbar");
-            if (tabbar != null) {
-                showTabBar = tabbar.booleanValue();
-            }
-            int tabbarinit = features.get("tabbarinit");
-            if (tabbarinit != null) {
-                tabBarInit = tabbarinit;
-            }*/
-            Boolean cache = features.get(CLEAR_ALL_CACHE);
-            if (cache != null) {
-                clearAllCache = cache.booleanValue();
+        /**
+         * Display a new browser with the specified URL.
+         *
+         * @param url           The url to load.
+         * @param jsonObject
+         * @param tabConfig     The tabs option of open(), or null.
+         */
+        public String showWebPage(final String url, HashMap<String, Boolean> features, JSONArray tabConfig) {
+            // A persist=yes browser picks up where the last one opened with this URL was
+            BrowserSnapshots.Snapshot found = null;
+            persist = features != null && Boolean.TRUE.equals(features.get(PERSIST)) && snapshots != null
+                    && engines == null && (tabConfig == null || tabConfig.length() == 0)
+                    && !Boolean.TRUE.equals(features.get(TAB_BAR));
+            if (persist) {
+                found = snapshots.get(url);
+                if (found != null) {
+                    features = found.mergeFeatures(features, HIDDEN);
+                }
+                persistUrl = url;
+                persistFeatures = features;
             } else {
-                cache = features.get(CLEAR_SESSION_CACHE);
+                persistUrl = null;
+                persistFeatures = null;
+            }
+            final BrowserSnapshots.Snapshot snapshot = found;
+
+            // Determine if we should hide the location bar.
+            showLocationBar = true;
+            openWindowHidden = false;
+            recycleOnClose = false;
+            resourceTiming = false;
+            clearAllCache = false;
+            clearSessionCache = false;
+            showTabBar = tabConfig != null && tabConfig.length() > 0;
+            boolean batchEvents = false;
+            boolean coalesceEvents = false;
+            if (features != null) {
+                Boolean show = features.get(LOCATION);
+                if (show != null) {
+                    showLocationBar = show.booleanValue();
+                }
+                Boolean hidden = features.get(HIDDEN);
+                if (hidden != null) {
+                    openWindowHidden = hidden.booleanValue();
+                }
+                Boolean recycle = features.get(RECYCLE);
+                if (recycle != null) {
+                    recycleOnClose = recycle.booleanValue();
+                }
+                Boolean batch = features.get(BATCH_EVENTS);
+                if (batch != null) {
+                    batchEvents = batch.booleanValue();
+                }
+                Boolean coalesce = features.get(COALESCE_EVENTS);
+                if (coalesce != null) {
+                    coalesceEvents = coalesce.booleanValue();
+                }
+                Boolean timing = features.get(RESOURCE_TIMING);
+                if (timing != null) {
+                    resourceTiming = timing.booleanValue();
+                }
+                Boolean tabbar = features.get(TAB_BAR);
+                if (tabbar != null) {
+                    showTabBar = tabbar.booleanValue();
+                }
+                Boolean cache = features.get(CLEAR_ALL_CACHE);
                 if (cache != null) {
-                    clearSessionCache = cache.booleanValue();
+                    clearAllCache = cache.booleanValue();
+                } else {
+                    cache = features.get(CLEAR_SESSION_CACHE);
+                    if (cache != null) {
+                        clearSessionCache = cache.booleanValue();
+                    }
                 }
             }
-        }
-        
-        final CordovaWebView thatWebView = this.webView;
-
-        // Create dialog in new thread
-        Runnable runnable = new Runnable() {
-            /**
-             * Convert our DIP units to Pixels
-             *
-             * @return int
-             */
-            private int dpToPixels(int dipValue) {
-                int value = (int) TypedValue.applyDimension( TypedValue.COMPLEX_UNIT_DIP,
-                                                            (float) dipValue,
-                                                            cordova.getActivity().getResources().getDisplayMetrics()
-                );
-
-                return value;
-            }
 
-            public void run() {
-                // Let's create the main dialog
-                dialog = new InAppBrowserBetaDialog(cordova.getActivity(), getShowTabBar() ? android.R.style.Theme_DeviceDefault : android.R.style.Theme_NoTitleBar);
-                
-                if (getShowTabBar()) dialog.getWindow().requestFeature(Window.FEATURE_ACTION_BAR);
-
-                dialog.getWindow().getAttributes().windowAnimations = android.R.style.Animation_Dialog;
-                dialog.requestWindowFeature(getShowTabBar() ? Window.FEATURE_ACTION_BAR : Window.FEATURE_NO_TITLE);
-                dialog.setCancelable(true);
-                dialog.setInAppBroswer(getInAppBrowser());
-
-
-                // Main container layout
-                LinearLayout main = new LinearLayout(cordova.getActivity());
-                main.setOrientation(LinearLayout.VERTICAL);
-
-                // Toolbar layout
-                RelativeLayout toolbar = new RelativeLayout(cordova.getActivity());
-                //Please, no more black! 
-                //toolbar.setBackgroundColor(android.graphics.Color.LTGRAY);
-                // How about red?
-                toolbar.setBackgroundColor(android.graphics.Color.rgb(188, 79, 68));
-                toolbar.setLayoutParams(new RelativeLayout.LayoutParams(LayoutParams.MATCH_PARENT, this.dpToPixels(44)));
-                toolbar.setPadding(this.dpToPixels(2), this.dpToPixels(2), this.dpToPixels(2), this.dpToPixels(2));
-                toolbar.setHorizontalGravity(Gravity.LEFT);
-                toolbar.setVerticalGravity(Gravity.TOP);
-
-                // Action Button Container layout
-                RelativeLayout actionButtonContainer = new RelativeLayout(cordova.getActivity());
-                actionButtonContainer.setLayoutParams(new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT));
-                actionButtonContainer.setHorizontalGravity(Gravity.LEFT);
-                actionButtonContainer.setVerticalGravity(Gravity.CENTER_VERTICAL);
-                actionButtonContainer.setId(1);
-
-                // Back button
-                Button back = new Button(cordova.getActivity());
-                RelativeLayout.LayoutParams backLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
-                backLayoutParams.addRule(RelativeLayout.ALIGN_LEFT);
-                back.setLayoutParams(backLayoutParams);
-                back.setContentDescription("Back Button");
-                back.setId(2);
-                /*
-                back.setText("<");
-                */
-                Resources activityRes = cordova.getActivity().getResources();
-                int backResId = activityRes.getIdentifier("ic_action_previous_item", "drawable", cordova.getActivity().getPackageName());
-                Drawable backIcon = activityRes.getDrawable(backResId);
-                if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN)
-                {
-                    back.setBackgroundDrawable(backIcon);
-                }
-                else
-                {
-                    back.setBackground(backIcon);
-                }
-                back.setOnClickListener(new View.OnClickListener() {
-                    public void onClick(View v) {
-                        goBack();
+            // Batches are flushed from the UI thread's Looper, headless engines have none
+            events.configure(batchEvents && handler != null, eventBatchWindow, coalesceEvents);
+
+            final CordovaWebView thatWebView = webView;
+            if (engines != null) {
+                runOnUiThread("open", new Runnable() {
+                    @Override
+                    public void run() {
+                        resetPageState();
+                        if (recycled) {
+                            recycled = false;
+                            if (!recycleOnClose) {
+                                // The parked browser isn't wanted this time round
+                                destroyViews();
+                            }
+                        }
+                        if (engine == null) {
+                            engine = engines.create();
+                        }
+                        engine.setClient(new InAppBrowserBetaClient(thatWebView, null, BrowserInstance.this));
+                        interfaceRegistry.bindAll(engine);
+                        engine.loadUrl(url);
+                        recordShown(url);
+                        setBackground(openWindowHidden);
                     }
                 });
+                return "";
+            }
+            final ArrayList<BrowserTabs.Tab> tabList;
+            if (!getShowTabBar()) {
+                tabList = null;
+            } else if (tabConfig != null && tabConfig.length() > 0) {
+                tabList = BrowserTabs.parse(tabConfig);
+            } else {
+                try {
+                    tabList = BrowserTabs.parse(new JSONArray(DEFAULT_TABS));
+                } catch (JSONException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+            if (tabList != null) {
+                // The tab WebViews can't all be parked in one dialog
+                recycleOnClose = false;
+                tabBarInit = Math.max(0, Math.min(tabBarInit, tabList.size() - 1));
+            }
 
-                // Forward button
-                Button forward = new Button(cordova.getActivity());
-                RelativeLayout.LayoutParams forwardLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
-                forwardLayoutParams.addRule(RelativeLayout.RIGHT_OF, 2);
-                forward.setLayoutParams(forwardLayoutParams);
-                forward.setContentDescription("Forward Button");
-                forward.setId(3);
-                //forward.setText(">");
-                int fwdResId = activityRes.getIdentifier("ic_action_next_item", "drawable", cordova.getActivity().getPackageName());
-                Drawable fwdIcon = activityRes.getDrawable(fwdResId);
-                if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN)
-                {
-                    forward.setBackgroundDrawable(fwdIcon);
-                }
-                else
-                {
-                    forward.setBackground(fwdIcon);
-                }
-                forward.setOnClickListener(new View.OnClickListener() {
-                    public void onClick(View v) {
-                        goForward();
-                    }
-                });
+            // Create dialog in new thread
+            Runnable runnable = new Runnable() {
+                /**
+                 * Convert our DIP units to Pixels
+                 *
+                 * @return int
+                 */
+                private int dpToPixels(int dipValue) {
+                    int value = (int) TypedValue.applyDimension( TypedValue.COMPLEX_UNIT_DIP,
+                                                                (float) dipValue,
+                                                                cordova.getActivity().getResources().getDisplayMetrics()
+                    );
+
+                    return value;
+                }
 
-                // Edit Text Box
-                edittext = new EditText(cordova.getActivity());
-                RelativeLayout.LayoutParams textLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
-                textLayoutParams.addRule(RelativeLayout.RIGHT_OF, 1);
-                textLayoutParams.addRule(RelativeLayout.LEFT_OF, 5);
-                edittext.setLayoutParams(textLayoutParams);
-                edittext.setId(4);
-                edittext.setSingleLine(true);
-                edittext.setText(url);
-                edittext.setVisibility(View.GONE);
-                edittext.setInputType(InputType.TYPE_TEXT_VARIATION_URI);
-                edittext.setImeOptions(EditorInfo.IME_ACTION_GO);
-                edittext.setInputType(InputType.TYPE_NULL); // Will not except input... Makes the text NON-EDITABLE
-                edittext.setOnKeyListener(new View.OnKeyListener() {
-                    public boolean onKey(View v, int keyCode, KeyEvent event) {
-                        // If the event is a key-down event on the "enter" button
-                        if ((event.getAction() == KeyEvent.ACTION_DOWN) && (keyCode == KeyEvent.KEYCODE_ENTER)) {
-                          navigate(edittext.getText().toString());
-                          return true;
+                public void run() {
+                    resetPageState();
+                    if (recycled) {
+                        recycled = false;
+                        if (recycleOnClose && tabList == null && dialog != null && engine != null) {
+                            // Warm open: the dialog and its views survived the last close
+                            toolbar.setVisibility(getShowLocationBar() ? View.VISIBLE : View.GONE);
+                            edittext.setText(url);
+                            engine.setClient(new InAppBrowserBetaClient(thatWebView, edittext, BrowserInstance.this));
+                            interfaceRegistry.bindAll(engine);
+                            clearCookies();
+                            engine.loadUrl(url);
+                            getWebView().requestFocus();
+                            dialog.show();
+                            recordShown(url);
+                            if (openWindowHidden) {
+                                dialog.hide();
+                            }
+                            setBackground(openWindowHidden);
+                            return;
                         }
-                        return false;
+                        // The parked browser isn't wanted this time round
+                        destroyViews();
                     }
-                });
 
-                // Close button
-                Button close = new Button(cordova.getActivity());
-                RelativeLayout.LayoutParams closeLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
-                closeLayoutParams.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
-                close.setLayoutParams(closeLayoutParams);
-                forward.setContentDescription("Close Button");
-                close.setId(5);
-                //close.setText(buttonLabel);
-                int closeResId = activityRes.getIdentifier("ic_action_remove", "drawable", cordova.getActivity().getPackageName());
-                Drawable closeIcon = activityRes.getDrawable(closeResId);
-                if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN)
-                {
-                    close.setBackgroundDrawable(closeIcon);
-                }
-                else
-                {
-                    close.setBackground(closeIcon);
-                }
-                close.setOnClickListener(new View.OnClickListener() {
-                    public void onClick(View v) {
-                        closeDialog();
+                    // Let's create the main dialog
+                    dialog = new InAppBrowserBetaDialog(cordova.getActivity(), getShowTabBar() ? android.R.style.Theme_DeviceDefault : android.R.style.Theme_NoTitleBar);
+
+                    if (getShowTabBar()) dialog.getWindow().requestFeature(Window.FEATURE_ACTION_BAR);
+
+                    dialog.getWindow().getAttributes().windowAnimations = android.R.style.Animation_Dialog;
+                    dialog.requestWindowFeature(getShowTabBar() ? Window.FEATURE_ACTION_BAR : Window.FEATURE_NO_TITLE);
+                    dialog.setCancelable(true);
+                    dialog.setInAppBroswer(BrowserInstance.this);
+
+
+                    // Main container layout
+                    LinearLayout main = new LinearLayout(cordova.getActivity());
+                    main.setOrientation(LinearLayout.VERTICAL);
+
+                    // Toolbar layout
+                    toolbar = new RelativeLayout(cordova.getActivity());
+                    //Please, no more black!
+                    //toolbar.setBackgroundColor(android.graphics.Color.LTGRAY);
+                    // How about red?
+                    toolbar.setBackgroundColor(android.graphics.Color.rgb(188, 79, 68));
+                    toolbar.setLayoutParams(new RelativeLayout.LayoutParams(LayoutParams.MATCH_PARENT, this.dpToPixels(44)));
+                    toolbar.setPadding(this.dpToPixels(2), this.dpToPixels(2), this.dpToPixels(2), this.dpToPixels(2));
+                    toolbar.setHorizontalGravity(Gravity.LEFT);
+                    toolbar.setVerticalGravity(Gravity.TOP);
+
+                    // Action Button Container layout
+                    RelativeLayout actionButtonContainer = new RelativeLayout(cordova.getActivity());
+                    actionButtonContainer.setLayoutParams(new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT));
+                    actionButtonContainer.setHorizontalGravity(Gravity.LEFT);
+                    actionButtonContainer.setVerticalGravity(Gravity.CENTER_VERTICAL);
+                    actionButtonContainer.setId(1);
+
+                    // Back button
+                    Button back = new Button(cordova.getActivity());
+                    RelativeLayout.LayoutParams backLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
+                    backLayoutParams.addRule(RelativeLayout.ALIGN_LEFT);
+                    back.setLayoutParams(backLayoutParams);
+                    back.setContentDescription("Back Button");
+                    back.setId(2);
+                    /*
+                    back.setText("<");
+                    */
+                    Resources activityRes = cordova.getActivity().getResources();
+                    int backResId = activityRes.getIdentifier("ic_action_previous_item", "drawable", cordova.getActivity().getPackageName());
+                    Drawable backIcon = activityRes.getDrawable(backResId);
+                    if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN)
+                    {
+                        back.setBackgroundDrawable(backIcon);
                     }
-                });
-
-                // WebView
-                inAppWebView = new WebView(cordova.getActivity());
-                inAppWebView.setLayoutParams(new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
-                inAppWebView.setWebChromeClient(new InAppChromeClientBeta(thatWebView));
-                WebViewClient client = new InAppBrowserBetaClient(thatWebView, edittext);
-                inAppWebView.setWebViewClient(client);
-                WebSettings settings = inAppWebView.getSettings();
-                settings.setJavaScriptEnabled(true);
-                settings.setJavaScriptCanOpenWindowsAutomatically(true);
-                settings.setBuiltInZoomControls(true);
-                settings.setPluginState(android.webkit.WebSettings.PluginState.ON);
-
-                //Toggle whether this is enabled or not!
-                Bundle appSettings = cordova.getActivity().getIntent().getExtras();
-                boolean enableDatabase = appSettings == null ? true : appSettings.getBoolean("InAppBrowserStorageEnabled", true);
-                if (enableDatabase) {
-                    String databasePath = cordova.getActivity().getApplicationContext().getDir("inAppBrowserDB", Context.MODE_PRIVATE).getPath();
-                    settings.setDatabasePath(databasePath);
-                    settings.setDatabaseEnabled(true);
-                }
-                settings.setDomStorageEnabled(true);
-
-                if (clearAllCache) {
-                    CookieManager.getInstance().removeAllCookie();
-                } else if (clearSessionCache) {
-                    CookieManager.getInstance().removeSessionCookie();
-                }
-
-                inAppWebView.loadUrl(url);
-                inAppWebView.setId(6);
-                inAppWebView.getSettings().setLoadWithOverviewMode(true);
-                inAppWebView.getSettings().setUseWideViewPort(true);
-                inAppWebView.requestFocus();
-                inAppWebView.requestFocusFromTouch();
-
-                // Add the back and forward buttons to our action button container layout
-                actionButtonContainer.addView(back);
-                actionButtonContainer.addView(forward);
-
-                // Add the views to our toolbar
-                toolbar.addView(actionButtonContainer);
-                toolbar.addView(edittext);
-                toolbar.addView(close);
-
-                // Don't add the toolbar if its been disabled
-                if (getShowLocationBar()) {
-                    // Add our toolbar to our main view/layout
-                    main.addView(toolbar);
-                }
-
-                // Add our webview to our main view/layout
-                main.addView(inAppWebView);
-
-                WindowManager.LayoutParams lp = new WindowManager.LayoutParams();
-
-                lp.copyFrom(dialog.getWindow().getAttributes());
-                lp.width = WindowManager.LayoutParams.MATCH_PARENT;
-                lp.height = WindowManager.LayoutParams.MATCH_PARENT;
-
-                dialog.setContentView(main);
-                dialog.show();
-                dialog.getWindow().setAttributes(lp);
-                //dialog.getWindow().setFlags(WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED, WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED);
-                // the goal of openhidden is to load the url and not display it
-                // Show() needs to be called to cause the URL to be loaded
-                if(openWindowHidden) {
-                	dialog.hide();
-                }
-
+                    else
+                    {
+                        back.setBackground(backIcon);
+                    }
+                    back.setOnClickListener(new View.OnClickListener() {
+                        public void onClick(View v) {
+                            goBack();
+                        }
+                    });
+
+                    // Forward button
+                    Button forward = new Button(cordova.getActivity());
+                    RelativeLayout.LayoutParams forwardLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
+                    forwardLayoutParams.addRule(RelativeLayout.RIGHT_OF, 2);
+                    forward.setLayoutParams(forwardLayoutParams);
+                    forward.setContentDescription("Forward Button");
+                    forward.setId(3);
+                    //forward.setText(">");
+                    int fwdResId = activityRes.getIdentifier("ic_action_next_item", "drawable", cordova.getActivity().getPackageName());
+                    Drawable fwdIcon = activityRes.getDrawable(fwdResId);
+                    if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN)
+                    {
+                        forward.setBackgroundDrawable(fwdIcon);
+                    }
+                    else
+                    {
+                        forward.setBackground(fwdIcon);
+                    }
+                    forward.setOnClickListener(new View.OnClickListener() {
+                        public void onClick(View v) {
+                            goForward();
+                        }
+                    });
+
+                    // Edit Text Box
+                    edittext = new EditText(cordova.getActivity());
+                    RelativeLayout.LayoutParams textLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
+                    textLayoutParams.addRule(RelativeLayout.RIGHT_OF, 1);
+                    textLayoutParams.addRule(RelativeLayout.LEFT_OF, 5);
+                    edittext.setLayoutParams(textLayoutParams);
+                    edittext.setId(4);
+                    edittext.setSingleLine(true);
+                    edittext.setText(url);
+                    edittext.setVisibility(View.GONE);
+                    edittext.setInputType(InputType.TYPE_TEXT_VARIATION_URI);
+                    edittext.setImeOptions(EditorInfo.IME_ACTION_GO);
+                    edittext.setInputType(InputType.TYPE_NULL); // Will not except input... Makes the text NON-EDITABLE
+                    edittext.setOnKeyListener(new View.OnKeyListener() {
+                        public boolean onKey(View v, int keyCode, KeyEvent event) {
+                            // If the event is a key-down event on the "enter" button
+                            if ((event.getAction() == KeyEvent.ACTION_DOWN) && (keyCode == KeyEvent.KEYCODE_ENTER)) {
+                              navigate(edittext.getText().toString());
+                              return true;
+                            }
+                            return false;
+                        }
+                    });
+
+                    // Close button
+                    Button close = new Button(cordova.getActivity());
+                    RelativeLayout.LayoutParams closeLayoutParams = new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
+                    closeLayoutParams.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+                    close.setLayoutParams(closeLayoutParams);
+                    forward.setContentDescription("Close Button");
+                    close.setId(5);
+                    //close.setText(buttonLabel);
+                    int closeResId = activityRes.getIdentifier("ic_action_remove", "drawable", cordova.getActivity().getPackageName());
+                    Drawable closeIcon = activityRes.getDrawable(closeResId);
+                    if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN)
+                    {
+                        close.setBackgroundDrawable(closeIcon);
+                    }
+                    else
+                    {
+                        close.setBackground(closeIcon);
+                    }
+                    close.setOnClickListener(new View.OnClickListener() {
+                        public void onClick(View v) {
+                            closeDialog();
+                        }
+                    });
+
+                    // WebView
+                    clearCookies();
+                    final FrameLayout tabContainer = tabList != null ? new FrameLayout(cordova.getActivity()) : null;
+                    if (tabList != null) {
+                        tabContainer.setLayoutParams(new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+                        tabs = new BrowserTabs(new BrowserTabs.Host() {
+                            @Override
+                            public WebViewEngine createView(int index) {
+                                WebViewEngine view = new WebViewEngine(webViewPool.acquire());
+                                view.setClient(new InAppBrowserBetaClient(thatWebView, edittext, BrowserInstance.this, index));
+                                interfaceRegistry.bindAll(view);
+                                tabContainer.addView(view.getView(), new FrameLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+                                return view;
+                            }
 
+                            @Override
+                            public void releaseView(int index, WebViewEngine view) {
+                                tabContainer.removeView(view.getView());
+                                interfaceRegistry.unbindAll(view);
+                            }
+                        }, tabList, getAppSettingInt(TAB_WEBVIEW_LIMIT, DEFAULT_TAB_WEBVIEW_LIMIT));
+                        // The page asked for by open() goes in the initial tab
+                        engine = tabs.select(getTabBarInit(), url);
+                    } else {
+                        tabs = null;
+                        WebViewEngine view = new WebViewEngine(webViewPool.acquire());
+                        view.setClient(new InAppBrowserBetaClient(thatWebView, edittext, BrowserInstance.this));
+                        interfaceRegistry.bindAll(view);
+                        if (snapshot != null) {
+                            restorePage(view, snapshot.page);
+                        } else {
+                            view.loadUrl(url);
+                        }
+                        engine = view;
+                    }
+                    getWebView().requestFocus();
+                    getWebView().requestFocusFromTouch();
 
+                    // Add the back and forward buttons to our action button container layout
+                    actionButtonContainer.addView(back);
+                    actionButtonContainer.addView(forward);
 
+                    // Add the views to our toolbar
+                    toolbar.addView(actionButtonContainer);
+                    toolbar.addView(edittext);
+                    toolbar.addView(close);
 
-                // Action bar testing (fake tabs, etc)
-                if (getShowTabBar()) {
-                    ActionBar actionBar = dialog.getActionBar();
-                    actionBar.setNavigationMode(ActionBar.NAVIGATION_MODE_TABS);
-                    actionBar.setBackgroundDrawable(new ColorDrawable(0xffbc4f44));
+                    // Add our toolbar to our main view/layout, hidden if its been disabled.
+                    // It is always added so that a recycled dialog can show it again.
+                    toolbar.setVisibility(getShowLocationBar() ? View.VISIBLE : View.GONE);
+                    main.addView(toolbar);
 
-                    ActionBar.TabListener tabListener = new ActionBar.TabListener() {
-                         public void onTabSelected(Tab tab, FragmentTransaction ft) {
-                            int tabIndex = tab.getPosition();
+                    // Add our webview, or the tabs holding them, to our main view/layout
+                    main.addView(tabs != null ? tabContainer : getWebView());
 
-                            try {
-                                JSONObject obj = new JSONObject();
-                                obj.put("type", "toolbarItemTapped");
-                                obj.put("index", tabIndex);
+                    WindowManager.LayoutParams lp = new WindowManager.LayoutParams();
 
-                                sendUpdate(obj, true);
-                            } catch (JSONException ex) {
-                                Log.d(LOG_TAG, "Should never happen");
-                            }
-                         }
+                    lp.copyFrom(dialog.getWindow().getAttributes());
+                    lp.width = WindowManager.LayoutParams.MATCH_PARENT;
+                    lp.height = WindowManager.LayoutParams.MATCH_PARENT;
 
-                         public void onTabUnselected(Tab tab, FragmentTransaction ft) {
-                             // TODO Auto-generated method stub
-                         }
+                    dialog.setContentView(main);
+                    dialog.show();
+                    recordShown(url);
+                    dialog.getWindow().setAttributes(lp);
+                    //dialog.getWindow().setFlags(WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED, WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED);
+                    // the goal of openhidden is to load the url and not display it
+                    // Show() needs to be called to cause the URL to be loaded
+                    if(openWindowHidden) {
+                    	dialog.hide();
+                    }
+                    setBackground(openWindowHidden);
+
+
+
+
+
+                    // Tab bar
+                    if (tabs != null) {
+                        ActionBar actionBar = dialog.getActionBar();
+                        actionBar.setNavigationMode(ActionBar.NAVIGATION_MODE_TABS);
+                        actionBar.setBackgroundDrawable(new ColorDrawable(0xffbc4f44));
+                        actionBar.setDisplayShowHomeEnabled(false);
+                        actionBar.setDisplayShowTitleEnabled(false);
+
+                        ActionBar.TabListener tabListener = new ActionBar.TabListener() {
+                             public void onTabSelected(Tab tab, FragmentTransaction ft) {
+                                int tabIndex = tab.getPosition();
+                                if (tabs == null || !tabBarReady) {
+                                    // The initial tab, which is already showing
+                                    return;
+                                }
+                                selectTab(tabIndex);
+
+                                if (events.wants("toolbarItemTapped")) {
+                                    try {
+                                        JSONObject obj = new JSONObject();
+                                        obj.put("type", "toolbarItemTapped");
+                                        obj.put("index", tabIndex);
+
+                                        sendUpdate(obj, true);
+                                    } catch (JSONException ex) {
+                                        Log.d(LOG_TAG, "Should never happen");
+                                    }
+                                }
+                             }
+
+                             public void onTabUnselected(Tab tab, FragmentTransaction ft) {
+                                 // The tab engine pauses the WebView when the next one is selected
+                             }
+
+                             public void onTabReselected(Tab tab, FragmentTransaction ft) {
+                                 // Nothing to do, the tab is already showing
+                             }
+                         };
+
+                        tabBarReady = false;
+                        for (int i = 0; i < tabs.size(); i++) {
+                            ActionBar.Tab tab = actionBar.newTab().setText(tabs.getTitle(i)).setTabListener(tabListener);
+                            actionBar.addTab(tab, i, i == getTabBarInit());
+                        }
+                        tabBarReady = true;
+                    }
+                }
+            };
+            runOnUiThread("open", runnable);
+            return "";
+        }
 
-                         public void onTabReselected(Tab tab, FragmentTransaction ft) {
-                             // TODO Auto-generated method stub
-                         }
-                     };
+        /**
+         * Clear the cookie cache if requested by the clearcache or clearsessioncache features
+         */
+        private void clearCookies() {
+            if (clearAllCache) {
+                CookieManager.getInstance().removeAllCookie();
+            } else if (clearSessionCache) {
+                CookieManager.getInstance().removeSessionCookie();
+            }
+        }
 
-                    ActionBar.Tab tab1 = actionBar.newTab().setText("Home").setTabListener(tabListener);
-                    ActionBar.Tab tab2 = actionBar.newTab().setText("Maps").setTabListener(tabListener);
-                    ActionBar.Tab tab3 = actionBar.newTab().setText("Forums").setTabListener(tabListener);
-                    ActionBar.Tab tab4 = actionBar.newTab().setText("Chat").setTabListener(tabListener);
+        /**
+         * Create a new plugin success result and send it back to JavaScript
+         *
+         * @param obj a JSONObject contain event payload information
+         */
+        void sendUpdate(JSONObject obj, boolean keepCallback) {
+            sendUpdate(obj, keepCallback, PluginResult.Status.OK);
+        }
 
-                    //add the two tabs to the actionbar
-                    actionBar.addTab(tab1, 0, false);
-                    actionBar.addTab(tab2, 1, false);
-                    actionBar.addTab(tab3, 2, false);
-                    actionBar.addTab(tab4, 3, false);
-                }
-            }
-        };
-        this.cordova.getActivity().runOnUiThread(runnable);
-        return "";
-    }
+        /**
+         * Create a new plugin result and send it back to JavaScript
+         *
+         * @param obj a JSONObject contain event payload information
+         * @param status the status code to return to the JavaScript environment
+         */
+        private void sendUpdate(JSONObject obj, boolean keepCallback, PluginResult.Status status) {
+            events.send(obj, keepCallback, status);
+        }
 
-    /**
-     * Create a new plugin success result and send it back to JavaScript
-     *
-     * @param obj a JSONObject contain event payload information
-     */
-    private void sendUpdate(JSONObject obj, boolean keepCallback) {
-        sendUpdate(obj, keepCallback, PluginResult.Status.OK);
-    }
+        public void addCallbackInterface(BrowserEngine view) {
+            bindInterface(view, LOADED_STATUS_INTERFACE);
+        }
 
-    /**
-     * Create a new plugin result and send it back to JavaScript
-     *
-     * @param obj a JSONObject contain event payload information
-     * @param status the status code to return to the JavaScript environment
-     */    
-    private void sendUpdate(JSONObject obj, boolean keepCallback, PluginResult.Status status) {
-        if (callbackContext != null) {
-            PluginResult result = new PluginResult(status, obj);
-            result.setKeepCallback(keepCallback);
-            callbackContext.sendPluginResult(result);
-            if (!keepCallback) {
-                callbackContext = null;
-            }
+        public void addCallbackInterfaceNotify(BrowserEngine view) {
+            bindInterface(view, NOTIFY_STATUS_INTERFACE);
         }
-    }
 
-    public void addCallbackInterface(WebView view) {
-        final WebView _theWebView = view;
-        this.cordova.getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                _theWebView.addJavascriptInterface(new LoadedStatusInterface(), "LOADEDSTATUS");
+        /**
+         * Bind one of our JavaScript interfaces to the engine unless it already has it.
+         * Runs synchronously when called on the UI thread, otherwise posts to it.
+         *
+         * @param view  the engine to bind to
+         * @param name  LOADEDSTATUS or NOTIFYSTATUS
+         */
+        private void bindInterface(final BrowserEngine view, final String name) {
+            if (engines == null && Looper.myLooper() == Looper.getMainLooper()) {
+                interfaceRegistry.bind(view, name);
+            } else if (!interfaceRegistry.isBound(view, name)) {
+                // Binding the same interface again while the first is pending is a no-op
+                runOnUiThread(null, Arrays.asList(view, name), new Runnable() {
+                    @Override
+                    public void run() {
+                        interfaceRegistry.bind(view, name);
+                    }
+                });
             }
-        });
-    }
+        }
 
-    public void addCallbackInterfaceNotify(WebView view) {
-        final WebView _theWebView = view;
-        this.cordova.getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                _theWebView.addJavascriptInterface(new NotifyStatusInterface(), "NOTIFYSTATUS");
-            }
-        });
+        /**
+         * @return the names of the JavaScript interfaces bound to this browser's engine
+         */
+        public Set<String> getBoundInterfaces() {
+            BrowserEngine view = engine;
+            return view == null ? Collections.<String>emptySet() : interfaceRegistry.getBound(view);
+        }
     }
 
-
-
-    
     /**
-     * The webview client receives notifications about appView
+     * Receives the page lifecycle of a browser's engine, see BrowserEngine
      */
-    public class InAppBrowserBetaClient extends WebViewClient {
+    public class InAppBrowserBetaClient extends BrowserEngine.Client {
         EditText edittext;
         CordovaWebView webView;
+        BrowserInstance browser;
+        // The tab of the WebView, -1 if the browser has no tabs
+        int tab;
+        // SystemClock.elapsedRealtime() of the first onPageStarted of the current load, 0 between loads
+        long pageStartedAt = 0;
+        boolean pageFailed = false;
+        // The page last started, for BrowserInstance.recover()
+        String lastUrl;
+        // SystemClock.elapsedRealtime() of the renderer loss this engine replaces, 0 once its page has loaded
+        long recoveringSince;
+        final boolean recoveringFromCrash;
+        // Only with resourcetiming=yes
+        final ResourceTimings timings;
 
         /**
          * Constructor.
          *
          * @param mContext
          * @param edittext
+         * @param browser   the browser whose engine this is
+         */
+        public InAppBrowserBetaClient(CordovaWebView webView, EditText mEditText, BrowserInstance browser) {
+            this(webView, mEditText, browser, -1);
+        }
+
+        /**
+         * @param tab   the index of the tab whose engine this is
          */
-        public InAppBrowserBetaClient(CordovaWebView webView, EditText mEditText) {
+        public InAppBrowserBetaClient(CordovaWebView webView, EditText mEditText, BrowserInstance browser, int tab) {
             this.webView = webView;
             this.edittext = mEditText;
+            this.browser = browser;
+            this.tab = tab;
+            this.timings = browser.resourceTiming ? new ResourceTimings() : null;
+            this.recoveringSince = browser.recoveryStart;
+            this.recoveringFromCrash = browser.recoveryCrashed;
+        }
+
+        /**
+         * Note the start of subresource requests for the resourcetiming event. The engine still
+         * makes every request itself.
+         *
+         * @param view          The engine making the request, called on one of its threads.
+         * @param url           The url of the resource.
+         */
+        @Override
+        public void onResourceRequest(BrowserEngine view, String url) {
+            if (timings != null) {
+                timings.onRequest(url);
+            }
+        }
+
+        /**
+         * Route tel:, sms:, geo:, mailto:, market: and app-registered URLs before the engine
+         * starts loading them, see SchemeRouter.
+         *
+         * @param view          The engine about to navigate.
+         * @param url           The url it is navigating to.
+         * @return true if the engine shouldn't load the url
+         */
+        @Override
+        public boolean shouldOverrideUrlLoading(BrowserEngine view, String url) {
+            return browser.route(url, tab, false);
         }
 
         /**
          * Notify the host application that a page has started loading.
          *
-         * @param view          The webview initiating the callback.
+         * @param view          The engine initiating the callback.
          * @param url           The url of the page.
          */
         @Override
-        public void onPageStarted(WebView view, String url,  Bitmap favicon) {
-            super.onPageStarted(view, url, favicon);
-            String newloc = "";
-            if (url.startsWith("http:") || url.startsWith("https:") || url.startsWith("file:")) {
-                newloc = url;
-            } 
-            // If dialing phone (tel:5551212)
-            else if (url.startsWith(WebView.SCHEME_TEL)) {
-                try {
-                    Intent intent = new Intent(Intent.ACTION_DIAL);
-                    intent.setData(Uri.parse(url));
-                    cordova.getActivity().startActivity(intent);
-                } catch (android.content.ActivityNotFoundException e) {
-                    LOG.e(LOG_TAG, "Error dialing " + url + ": " + e.toString());
+        public void onPageStarted(BrowserEngine view, String url) {
+            // Other apps' schemes never get this far, see BrowserInstance.route()
+            String newloc = url;
+            lastUrl = url;
+            if (pageStartedAt == 0) {
+                // Redirects start again, time the load from the first
+                pageStartedAt = SystemClock.elapsedRealtime();
+                pageFailed = false;
+                if (timings != null) {
+                    timings.reset();
                 }
             }
 
-            else if (url.startsWith("geo:") || url.startsWith(WebView.SCHEME_MAILTO) || url.startsWith("market:")) {
+            if (view == browser.engine && edittext != null && !newloc.equals(edittext.getText().toString())) {
+                edittext.setText(newloc);
+            }
+
+            browser.interfaceRegistry.bindAll(view);
+            
+
+            if (browser.events.wants(LOAD_START_EVENT)) {
                 try {
-                    Intent intent = new Intent(Intent.ACTION_VIEW);
-                    intent.setData(Uri.parse(url));
-                    cordova.getActivity().startActivity(intent);
-                } catch (android.content.ActivityNotFoundException e) {
-                    LOG.e(LOG_TAG, "Error with " + url + ": " + e.toString());
+                    JSONObject obj = new JSONObject();
+                    obj.put("type", LOAD_START_EVENT);
+                    if (tab >= 0) {
+                        obj.put("tab", tab);
+                    }
+                    obj.put("url", newloc);
+    
+                    browser.sendUpdate(obj, true);
+                } catch (JSONException ex) {
+                    Log.d(LOG_TAG, "Should never happen");
+                }
+            }
+        }
+        
+        @Override
+        public void onPageFinished(BrowserEngine view, String url) {
+            // A page loaded without it, from a snapshot for instance
+            browser.dropPrefetch();
+            if (view == browser.engine) {
+                if (browser.background) {
+                    // A new page starts out visible
+                    view.evaluateJavascript(String.format(BACKGROUND_SCRIPT, true), null);
+                }
+                browser.rearmWaits(view);
+                browser.onRestoredPageFinished(view);
+                browser.snapshot();
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            long loadTime = pageStartedAt == 0 ? -1 : now - pageStartedAt;
+            long openTime = browser.takeOpenTime(now);
+            pageStartedAt = 0;
+            if (!pageFailed) {
+                if (loadTime >= 0) {
+                    metrics.record(NavigationMetrics.PAGE_LOAD, url, loadTime);
+                }
+                if (openTime >= 0) {
+                    metrics.record(NavigationMetrics.OPEN_TO_LOAD_STOP, url, openTime);
                 }
             }
-            // If sms:5551212?body=This is the message
-            else if (url.startsWith("sms:")) {
+
+            if (browser.events.wants(LOAD_STOP_EVENT)) {
                 try {
-                    Intent intent = new Intent(Intent.ACTION_VIEW);
-
-                    // Get address
-                    String address = null;
-                    int parmIndex = url.indexOf('?');
-                    if (parmIndex == -1) {
-                        address = url.substring(4);
-                    }
-                    else {
-                        address = url.substring(4, parmIndex);
-
-                        // If body, then set sms body
-                        Uri uri = Uri.parse(url);
-                        String query = uri.getQuery();
-                        if (query != null) {
-                            if (query.startsWith("body=")) {
-                                intent.putExtra("sms_body", query.substring(5));
-                            }
+                    JSONObject obj = new JSONObject();
+                    obj.put("type", LOAD_STOP_EVENT);
+                    if (tab >= 0) {
+                        obj.put("tab", tab);
+                    }
+                    obj.put("url", url);
+                    // Milliseconds since the load started, and since open() for the first page
+                    if (loadTime >= 0) {
+                        obj.put("loadTime", loadTime);
+                    }
+                    if (openTime >= 0) {
+                        obj.put("openTime", openTime);
+                    }
+    
+                    browser.sendUpdate(obj, true);
+                } catch (JSONException ex) {
+                    Log.d(LOG_TAG, "Should never happen");
+                }
+            }
+
+            if (recoveringSince != 0) {
+                long recoveryTime = now - recoveringSince;
+                recoveringSince = 0;
+                if (browser.events.wants(RENDERER_RECOVERED_EVENT)) {
+                    try {
+                        JSONObject obj = new JSONObject();
+                        obj.put("type", RENDERER_RECOVERED_EVENT);
+                        if (tab >= 0) {
+                            obj.put("tab", tab);
                         }
+                        obj.put("url", url);
+                        obj.put("crashed", recoveringFromCrash);
+                        // Milliseconds from the loss of the renderer to the page being back
+                        obj.put("recoveryTime", recoveryTime);
+
+                        browser.sendUpdate(obj, true);
+                    } catch (JSONException ex) {
+                        Log.d(LOG_TAG, "Should never happen");
                     }
-                    intent.setData(Uri.parse("sms:" + address));
-                    intent.putExtra("address", address);
-                    intent.setType("vnd.android-dir/mms-sms");
-                    cordova.getActivity().startActivity(intent);
-                } catch (android.content.ActivityNotFoundException e) {
-                    LOG.e(LOG_TAG, "Error sending sms " + url + ":" + e.toString());
                 }
             }
-            else {
-                newloc = "http://" + url;
+
+            if (timings != null && browser.events.wants(RESOURCE_TIMING_EVENT)) {
+                sendResourceTimings(view, url);
             }
+        }
 
-            if (!newloc.equals(edittext.getText().toString())) {
-                edittext.setText(newloc);
+        /**
+         * Hand the engine the page of a prefetch=yes open, or a response warmed by the prefetch
+         * action, see PagePrefetcher. Browsers opened with clearcache or clearsessioncache
+         * start out without any cache, the warmed responses included.
+         */
+        @Override
+        public WebResourceResponse interceptRequest(BrowserEngine view, String url) {
+            WebResourceResponse response = browser.takePrefetch(url);
+            if (response == null && prefetcher != null && !browser.clearAllCache && !browser.clearSessionCache) {
+                response = prefetcher.cached(url);
             }
+            return response;
+        }
 
-            addCallbackInterface(view);
-            addCallbackInterfaceNotify(view);
-            
+        /**
+         * Swap in a new engine instead of letting the app go down, see BrowserInstance.recover()
+         */
+        @Override
+        public boolean onRenderProcessGone(BrowserEngine view, boolean crashed) {
+            browser.recover(view, this, crashed);
+            return true;
+        }
 
-            try {
-                JSONObject obj = new JSONObject();
-                obj.put("type", LOAD_START_EVENT);
-                obj.put("url", newloc);
-    
-                sendUpdate(obj, true);
-            } catch (JSONException ex) {
-                Log.d(LOG_TAG, "Should never happen");
+        /**
+         * Send the resourcetiming summary of the page that just loaded, with the durations and
+         * sizes from its Resource Timing entries where the engine can report them.
+         */
+        private void sendResourceTimings(BrowserEngine view, final String url) {
+            if (!canEvaluateJavascript()) {
+                sendResourceTimings(url, null);
+                return;
             }
+            view.evaluateJavascript(ResourceTimings.READ_ENTRIES_SCRIPT, new ValueCallback<String>() {
+                @Override
+                public void onReceiveValue(String value) {
+                    JSONArray entries = null;
+                    if (value != null && value.startsWith("[")) {
+                        try {
+                            entries = new JSONArray(value);
+                        } catch (JSONException e) {
+                            Log.d(LOG_TAG, "Unreadable resource timings: " + e.getMessage());
+                        }
+                    }
+                    sendResourceTimings(url, entries);
+                }
+            });
         }
-        
-        public void onPageFinished(WebView view, String url) {
-            super.onPageFinished(view, url);
-            
+
+        private void sendResourceTimings(String url, JSONArray entries) {
             try {
-                JSONObject obj = new JSONObject();
-                obj.put("type", LOAD_STOP_EVENT);
+                JSONObject obj = timings.summarize(entries);
+                obj.put("type", RESOURCE_TIMING_EVENT);
+                if (tab >= 0) {
+                    obj.put("tab", tab);
+                }
                 obj.put("url", url);
-    
-                sendUpdate(obj, true);
+
+                browser.sendUpdate(obj, true);
             } catch (JSONException ex) {
                 Log.d(LOG_TAG, "Should never happen");
             }
         }
         
-        public void onReceivedError(WebView view, int errorCode, String description, String failingUrl) {
-            super.onReceivedError(view, errorCode, description, failingUrl);
+        @Override
+        public void onReceivedError(BrowserEngine view, int errorCode, String description, String failingUrl) {
+            if (pageStartedAt != 0 && !pageFailed) {
+                metrics.record(NavigationMetrics.PAGE_ERROR, failingUrl, SystemClock.elapsedRealtime() - pageStartedAt);
+            }
+            pageFailed = true;
             
-            try {
-                JSONObject obj = new JSONObject();
-                obj.put("type", LOAD_ERROR_EVENT);
-                obj.put("url", failingUrl);
-                obj.put("code", errorCode);
-                obj.put("message", description);
+            if (browser.events.wants(LOAD_ERROR_EVENT)) {
+                try {
+                    JSONObject obj = new JSONObject();
+                    obj.put("type", LOAD_ERROR_EVENT);
+                    if (tab >= 0) {
+                        obj.put("tab", tab);
+                    }
+                    obj.put("url", failingUrl);
+                    obj.put("code", errorCode);
+                    obj.put("message", description);
     
-                sendUpdate(obj, true, PluginResult.Status.ERROR);
-            } catch (JSONException ex) {
-                Log.d(LOG_TAG, "Should never happen");
+                    browser.sendUpdate(obj, true, PluginResult.Status.ERROR);
+                } catch (JSONException ex) {
+                    Log.d(LOG_TAG, "Should never happen");
+                }
             }
         	
         }
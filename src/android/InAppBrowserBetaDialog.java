@@ -31,14 +31,14 @@ import org.json.JSONObject;
  */
 public class InAppBrowserBetaDialog extends Dialog {
     Context context;
-    InAppBrowserBeta inAppBrowser = null;
+    InAppBrowserBeta.BrowserInstance inAppBrowser = null;
 
     public InAppBrowserBetaDialog(Context context, int theme) {
         super(context, theme);
         this.context = context;
     }
 
-    public void setInAppBroswer(InAppBrowserBeta browser) {
+    public void setInAppBroswer(InAppBrowserBeta.BrowserInstance browser) {
         this.inAppBrowser = browser;
     }
 
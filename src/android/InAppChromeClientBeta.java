@@ -91,6 +91,10 @@ public class InAppChromeClientBeta extends WebChromeClient {
      * If present, the prompt message is expected to be a JSON-encoded value to
      * pass to the callback. A JSON_EXCEPTION is returned if the JSON is invalid.
      *
+     * Where WebView.evaluateJavascript() is available, script and style results are
+     * delivered through it instead, so this bridge is only used before KitKat and
+     * for injectScriptFile, which has to wait for the script's onload.
+     *
      * @param view
      * @param url
      * @param message
@@ -105,15 +109,7 @@ public class InAppChromeClientBeta extends WebChromeClient {
                 PluginResult scriptResult;
                 String scriptCallbackId = defaultValue.substring(10);
                 if (scriptCallbackId.startsWith("InAppBrowser")) {
-                    if(message == null || message.length() == 0) {
-                        scriptResult = new PluginResult(PluginResult.Status.OK, new JSONArray());
-                    } else {
-                        try {
-                            scriptResult = new PluginResult(PluginResult.Status.OK, new JSONArray(message));
-                        } catch(JSONException e) {
-                            scriptResult = new PluginResult(PluginResult.Status.JSON_EXCEPTION, e.getMessage());
-                        }
-                    }
+                    scriptResult = parseScriptResult(message);
                     this.webView.sendPluginResult(scriptResult, scriptCallbackId);
                     result.confirm("");
                     return true;
@@ -130,4 +126,22 @@ public class InAppChromeClientBeta extends WebChromeClient {
         return false;
     }
 
+    /**
+     * Turn the message of a gap-iab:// prompt, the JSON array of the script's results, into
+     * the result for the script's callback
+     *
+     * @param message the prompt message, may be empty
+     * @return the result, JSON_EXCEPTION if the message isn't a JSON array
+     */
+    static PluginResult parseScriptResult(String message) {
+        if (message == null || message.length() == 0) {
+            return new PluginResult(PluginResult.Status.OK, new JSONArray());
+        }
+        try {
+            return new PluginResult(PluginResult.Status.OK, new JSONArray(message));
+        } catch(JSONException e) {
+            return new PluginResult(PluginResult.Status.JSON_EXCEPTION, e.getMessage());
+        }
+    }
+
 }
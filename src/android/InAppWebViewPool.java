@@ -0,0 +1,136 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+import android.webkit.WebView;
+
+import java.util.LinkedList;
+
+/**
+ * A small pool of pre-constructed, pre-configured WebViews.
+ *
+ * Building a WebView (and the Chromium state behind it) is the most expensive part of
+ * opening the browser, so the pool creates them ahead of time while the UI thread is
+ * idle and hands them out from showWebPage(). It starts filling up on the first acquire(),
+ * for the browsers opened after it.
+ *
+ * WebViews can only be created and touched on the UI thread, so every method here must
+ * be called from the UI thread as well.
+ */
+public class InAppWebViewPool {
+
+    private static final String LOG_TAG = "InAppWebViewPool";
+
+    /**
+     * Creates a new, fully configured WebView. Called on the UI thread.
+     */
+    public interface Factory {
+        WebView create();
+    }
+
+    private final Factory factory;
+    private final LinkedList<WebView> idle = new LinkedList<WebView>();
+    private int capacity;
+    private boolean refillScheduled = false;
+    // Set by trim(), until the next acquire()
+    private boolean trimmed = false;
+
+    public InAppWebViewPool(Factory factory, int capacity) {
+        this.factory = factory;
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * Hand out a pooled WebView, or build one on the spot if the pool is empty.
+     * A refill is scheduled for the next time the UI thread goes idle.
+     *
+     * @return a WebView that is not attached to any parent
+     */
+    public WebView acquire() {
+        trimmed = false;
+        WebView view = idle.poll();
+        if (view == null) {
+            Log.d(LOG_TAG, "Pool empty, creating WebView");
+            view = factory.create();
+        }
+        scheduleRefill();
+        return view;
+    }
+
+    /**
+     * Fill the pool up to its capacity, one WebView per idle pass of the UI thread
+     * so that we never hold up a frame for more than a single construction.
+     */
+    public void scheduleRefill() {
+        if (trimmed || refillScheduled || idle.size() >= capacity) {
+            return;
+        }
+        refillScheduled = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!trimmed && idle.size() < capacity) {
+                    idle.add(factory.create());
+                }
+                refillScheduled = !trimmed && idle.size() < capacity;
+                return refillScheduled;
+            }
+        });
+    }
+
+    /**
+     * Throw away an idle WebView whose renderer is gone, it can't be handed out any more
+     */
+    public void discard(WebView view) {
+        if (idle.remove(view)) {
+            view.destroy();
+            scheduleRefill();
+        }
+    }
+
+    /**
+     * Destroy every idle WebView in the pool.
+     */
+    public void clear() {
+        WebView view;
+        while ((view = idle.poll()) != null) {
+            view.destroy();
+        }
+    }
+
+    /**
+     * Destroy every idle WebView, and leave the pool empty until the next acquire(), to give
+     * memory back
+     */
+    public void trim() {
+        trimmed = true;
+        clear();
+    }
+
+    public int size() {
+        return idle.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
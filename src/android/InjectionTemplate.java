@@ -0,0 +1,152 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import java.util.ArrayList;
+
+/**
+ * A JavaScript wrapper for the inject{Script|Style}{Code|File} actions, split into its literal
+ * parts once so that rendering it is a single StringBuilder pass.
+ *
+ * In the template text, %s marks where the JSON-quoted source goes and %c where the callback
+ * id goes.
+ */
+public class InjectionTemplate {
+
+    public static final InjectionTemplate SCRIPT_CODE_WITH_CALLBACK = new InjectionTemplate(
+            "prompt(JSON.stringify([eval(%s)]), 'gap-iab://%c')");
+    // For evaluateJavascript(), which hands the JSON value of the script straight back
+    public static final InjectionTemplate SCRIPT_CODE_RESULT = new InjectionTemplate(
+            "[eval(%s)]");
+    public static final InjectionTemplate SCRIPT_FILE = new InjectionTemplate(
+            "(function(d) { var c = d.createElement('script'); c.src = %s; d.body.appendChild(c); })(document)");
+    public static final InjectionTemplate SCRIPT_FILE_WITH_CALLBACK = new InjectionTemplate(
+            "(function(d) { var c = d.createElement('script'); c.src = %s; c.onload = function() { prompt('', 'gap-iab://%c'); }; d.body.appendChild(c); })(document)");
+    public static final InjectionTemplate STYLE_CODE = new InjectionTemplate(
+            "(function(d) { var c = d.createElement('style'); c.innerHTML = %s; d.body.appendChild(c); })(document)");
+    public static final InjectionTemplate STYLE_CODE_WITH_CALLBACK = new InjectionTemplate(
+            "(function(d) { var c = d.createElement('style'); c.innerHTML = %s; d.body.appendChild(c); prompt('', 'gap-iab://%c');})(document)");
+    public static final InjectionTemplate STYLE_FILE = new InjectionTemplate(
+            "(function(d) { var c = d.createElement('link'); c.rel='stylesheet'; c.type='text/css'; c.href = %s; d.head.appendChild(c); })(document)");
+    public static final InjectionTemplate STYLE_FILE_WITH_CALLBACK = new InjectionTemplate(
+            "(function(d) { var c = d.createElement('link'); c.rel='stylesheet'; c.type='text/css'; c.href = %s; d.head.appendChild(c); prompt('', 'gap-iab://%c');})(document)");
+
+    private static final char SOURCE = 's';
+    private static final char CALLBACK_ID = 'c';
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // literals[i] is followed by slots[i], the last literal has no slot after it
+    private final String[] literals;
+    private final char[] slots;
+    private final int literalLength;
+
+    public InjectionTemplate(String template) {
+        ArrayList<String> literalList = new ArrayList<String>();
+        StringBuilder slotList = new StringBuilder();
+        int start = 0;
+        int length = 0;
+        for (int i = 0; i < template.length() - 1; i++) {
+            char next = template.charAt(i + 1);
+            if (template.charAt(i) == '%' && (next == SOURCE || next == CALLBACK_ID)) {
+                literalList.add(template.substring(start, i));
+                length += i - start;
+                slotList.append(next);
+                start = i + 2;
+                i++;
+            }
+        }
+        literalList.add(template.substring(start));
+        length += template.length() - start;
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.slots = slotList.toString().toCharArray();
+        this.literalLength = length;
+    }
+
+    /**
+     * Render the wrapper around the source
+     *
+     * @param source        the script/style text or URL, it is quoted as a JavaScript string
+     * @param callbackId    the id that the wrapper's prompt() reports back to, may be null if unused
+     * @return the script to inject
+     */
+    public String render(String source, String callbackId) {
+        String quoted = quote(source);
+        int capacity = literalLength;
+        for (char slot : slots) {
+            capacity += slot == SOURCE ? quoted.length() : (callbackId == null ? 0 : callbackId.length());
+        }
+        StringBuilder sb = new StringBuilder(capacity);
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(literals[i]);
+            sb.append(slots[i] == SOURCE ? quoted : callbackId);
+        }
+        sb.append(literals[slots.length]);
+        return sb.toString();
+    }
+
+    /**
+     * Quote a string as a JavaScript string literal in one pass. Produces the same escaping as
+     * JSON, plus U+2028/U+2029 which are line terminators in JavaScript source, and the slash
+     * of "</" so that the literal can't close a script element. This is the quoting for all
+     * code the plugin injects.
+     *
+     * @param source the string to quote
+     * @return the quoted string, including the surrounding double quotes
+     */
+    public static String quote(String source) {
+        int length = source.length();
+        int i = 0;
+        // Fast path: most scripts and URLs need no escaping until some way in, if at all
+        while (i < length && !needsEscape(source, i)) {
+            i++;
+        }
+        StringBuilder sb = new StringBuilder(length + 2 + (i < length ? 16 : 0));
+        sb.append('"').append(source, 0, i);
+        for (; i < length; i++) {
+            char c = source.charAt(i);
+            if (!needsEscape(source, i)) {
+                sb.append(c);
+                continue;
+            }
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\b': sb.append("\\b"); break;
+                case '\f': sb.append("\\f"); break;
+                case '/': sb.append("\\/"); break;
+                default:
+                    sb.append("\\u")
+                      .append(HEX[(c >> 12) & 0xf])
+                      .append(HEX[(c >> 8) & 0xf])
+                      .append(HEX[(c >> 4) & 0xf])
+                      .append(HEX[c & 0xf]);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static boolean needsEscape(String source, int i) {
+        char c = source.charAt(i);
+        return c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029'
+                || (c == '/' && i > 0 && source.charAt(i - 1) == '<');
+    }
+}
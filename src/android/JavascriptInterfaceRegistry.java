@@ -0,0 +1,118 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Binds the plugin's JavaScript bridge objects to browser engines, once per engine.
+ *
+ * A bridge object added with addJavascriptInterface() stays bound across navigations,
+ * so re-adding it on every page start only churns the UI thread. The registry keeps a
+ * single instance per interface name and remembers which names each engine already has.
+ *
+ * bind(), bindAll() and unbindAll() touch the engine and must be called on its thread.
+ */
+public class JavascriptInterfaceRegistry {
+
+    private final Map<String, Object> interfaces = new LinkedHashMap<String, Object>();
+    private final WeakHashMap<BrowserEngine, Set<String>> bound = new WeakHashMap<BrowserEngine, Set<String>>();
+
+    /**
+     * Register the instance to expose as window.&lt;name&gt; in bound engines
+     *
+     * @param name      the JavaScript name of the object
+     * @param instance  the bridge object, reused for every engine
+     */
+    public synchronized void register(String name, Object instance) {
+        interfaces.put(name, instance);
+    }
+
+    /**
+     * Bind a single registered interface, if the engine doesn't have it already
+     *
+     * @param engine    the engine to bind to
+     * @param name      the registered name
+     * @return true if the interface was added by this call
+     */
+    public synchronized boolean bind(BrowserEngine engine, String name) {
+        Object instance = interfaces.get(name);
+        if (instance == null) {
+            return false;
+        }
+        Set<String> names = bound.get(engine);
+        if (names == null) {
+            names = new HashSet<String>();
+            bound.put(engine, names);
+        }
+        if (!names.add(name)) {
+            return false;
+        }
+        engine.addJavascriptInterface(instance, name);
+        return true;
+    }
+
+    /**
+     * Bind every registered interface the engine doesn't have yet
+     *
+     * @param engine the engine to bind to
+     */
+    public synchronized void bindAll(BrowserEngine engine) {
+        for (String name : interfaces.keySet()) {
+            bind(engine, name);
+        }
+    }
+
+    /**
+     * Remove every interface bound to the engine
+     *
+     * @param engine the engine to unbind from
+     */
+    public synchronized void unbindAll(BrowserEngine engine) {
+        Set<String> names = bound.remove(engine);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            engine.removeJavascriptInterface(name);
+        }
+    }
+
+    /**
+     * @param engine the engine to check
+     * @return the names of the interfaces currently bound to the engine
+     */
+    public synchronized Set<String> getBound(BrowserEngine engine) {
+        Set<String> names = bound.get(engine);
+        if (names == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<String>(names));
+    }
+
+    public synchronized boolean isBound(BrowserEngine engine, String name) {
+        Set<String> names = bound.get(engine);
+        return names != null && names.contains(name);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds closed browsers that can't be garbage collected, in debug builds.
+ *
+ * Torn down browsers, their dialogs and WebViews are watched through weak references. CHECK_DELAY
+ * after an object is watched, the watcher asks for a garbage collection on a thread of its own.
+ * Every object that is still there then is reported once, as leaked.
+ */
+public class LeakWatcher {
+
+    private static final String LOG_TAG = "LeakWatcher";
+    static final long CHECK_DELAY = 5000;
+
+    /**
+     * Receives the leaks, on the watcher's thread
+     */
+    public interface Listener {
+        /**
+         * @param leaks [ { kind, browser, age } ], age in milliseconds since the object was watched
+         */
+        void onLeaks(JSONArray leaks);
+    }
+
+    private static class Watched extends WeakReference<Object> {
+        final String kind;
+        final String browser;
+        final long since;
+
+        Watched(Object object, ReferenceQueue<Object> queue, String kind, String browser) {
+            super(object, queue);
+            this.kind = kind;
+            this.browser = browser;
+            this.since = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private final Listener listener;
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    // Guarded by itself
+    private final HashSet<Watched> watched = new HashSet<Watched>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private boolean checkScheduled = false;
+    private boolean shutDown = false;
+
+    public LeakWatcher(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Expect an object to be garbage collected soon
+     *
+     * @param object    the object, only weakly referenced from here
+     * @param kind      what it is, for the report
+     * @param browser   the id of its browser
+     */
+    public void watch(Object object, String kind, String browser) {
+        synchronized (watched) {
+            if (shutDown) {
+                return;
+            }
+            watched.add(new Watched(object, queue, kind, browser));
+            schedule();
+        }
+    }
+
+    /**
+     * Stop watching, the objects watched so far aren't reported
+     */
+    public void shutdown() {
+        synchronized (watched) {
+            shutDown = true;
+            watched.clear();
+        }
+        timer.shutdownNow();
+    }
+
+    private void schedule() {
+        if (checkScheduled) {
+            return;
+        }
+        checkScheduled = true;
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, CHECK_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void check() {
+        Runtime.getRuntime().gc();
+        try {
+            // Give the collector a moment to enqueue what it cleared, as LeakCanary does
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            return;
+        }
+        System.runFinalization();
+
+        long now = SystemClock.elapsedRealtime();
+        JSONArray leaks = new JSONArray();
+        synchronized (watched) {
+            checkScheduled = false;
+            Reference<?> cleared;
+            while ((cleared = queue.poll()) != null) {
+                watched.remove(cleared);
+            }
+            Iterator<Watched> it = watched.iterator();
+            while (it.hasNext()) {
+                Watched object = it.next();
+                if (now - object.since < CHECK_DELAY) {
+                    continue;
+                }
+                it.remove();
+                if (object.get() == null) {
+                    continue;
+                }
+                try {
+                    JSONObject leak = new JSONObject();
+                    leak.put("kind", object.kind);
+                    leak.put("browser", object.browser);
+                    leak.put("age", now - object.since);
+                    leaks.put(leak);
+                } catch (JSONException e) {
+                    Log.d(LOG_TAG, "Should never happen");
+                }
+            }
+            if (!watched.isEmpty() && !shutDown) {
+                schedule();
+            }
+        }
+        if (leaks.length() > 0) {
+            listener.onLeaks(leaks);
+        }
+    }
+}
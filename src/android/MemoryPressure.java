@@ -0,0 +1,104 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+
+/**
+ * Turns the app's trim memory callbacks into the stages of giving memory back. Each stage
+ * includes the ones before it, see InAppBrowserBeta.trimMemory().
+ *
+ * Clearing caches is app-wide, so nothing is done until memory actually runs short: not when
+ * the app merely goes to the background (TRIM_MEMORY_UI_HIDDEN), nor at RUNNING_MODERATE.
+ */
+public class MemoryPressure implements ComponentCallbacks2 {
+
+    /**
+     * Clear the in-memory caches
+     */
+    public static final int CLEAR_CACHES = 1;
+    /**
+     * Drop the back/forward history of hidden browsers
+     */
+    public static final int DROP_HISTORY = 2;
+    /**
+     * Destroy the pooled WebViews and the browser parked for reuse
+     */
+    public static final int RELEASE_POOL = 3;
+    /**
+     * Destroy the WebViews of hidden browsers, keeping their state to rebuild them on show
+     */
+    public static final int RELEASE_HIDDEN = 4;
+
+    public interface Listener {
+        /**
+         * Called on the UI thread
+         *
+         * @param stage CLEAR_CACHES, DROP_HISTORY, RELEASE_POOL or RELEASE_HIDDEN
+         */
+        void onMemoryPressure(int stage);
+    }
+
+    private final Listener listener;
+
+    public MemoryPressure(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param level a ComponentCallbacks2 trim level
+     * @return the stage for it, 0 for none
+     */
+    static int stageFor(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            return RELEASE_HIDDEN;
+        } else if (level >= TRIM_MEMORY_MODERATE) {
+            return RELEASE_POOL;
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            return DROP_HISTORY;
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            return 0;
+        }
+        // While the app is in the foreground: it is the other processes that are going
+        else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return RELEASE_HIDDEN;
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            return RELEASE_POOL;
+        }
+        return 0;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        int stage = stageFor(level);
+        if (stage > 0) {
+            listener.onMemoryPressure(stage);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        listener.onMemoryPressure(RELEASE_HIDDEN);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
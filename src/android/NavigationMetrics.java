@@ -0,0 +1,214 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.net.Uri;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Navigation latencies of the in-app browser, per URL host.
+ *
+ * Recording happens on the UI thread while getMetrics reads from the plugin thread, so
+ * everything here is lock-free: hosts live in a ConcurrentHashMap and each latency is counted
+ * into a log-scale histogram of atomic buckets.
+ */
+public class NavigationMetrics {
+
+    /**
+     * From execute("open") to the first loadstop of the browser
+     */
+    public static final String OPEN_TO_LOAD_STOP = "openToLoadstop";
+    /**
+     * From execute("open") to the dialog being shown
+     */
+    public static final String OPEN_TO_SHOW = "openToShow";
+    /**
+     * From onPageStarted to onPageFinished, for every page load
+     */
+    public static final String PAGE_LOAD = "pageLoad";
+    /**
+     * From onPageStarted to onReceivedError
+     */
+    public static final String PAGE_ERROR = "pageError";
+
+    private static final String[] SERIES = { OPEN_TO_LOAD_STOP, OPEN_TO_SHOW, PAGE_LOAD, PAGE_ERROR };
+
+    // Pages from more hosts than this are lumped together, so a crawl can't grow the map without bound
+    private static final int MAX_HOSTS = 64;
+    private static final String OTHER_HOSTS = "(other)";
+    private static final String NO_HOST = "(none)";
+
+    private final ConcurrentHashMap<String, Histogram[]> hosts = new ConcurrentHashMap<String, Histogram[]>();
+
+    /**
+     * A latency histogram with four buckets per power of two, so any percentile it reports
+     * is at most 25% above the true value.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 128;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long millis) {
+            if (millis < 0) {
+                millis = 0;
+            }
+            buckets.incrementAndGet(bucketOf(millis));
+            count.incrementAndGet();
+            sum.addAndGet(millis);
+            long current;
+            while (millis > (current = max.get()) && !max.compareAndSet(current, millis)) {
+                // lost the race to another writer, try again
+            }
+        }
+
+        static int bucketOf(long millis) {
+            if (millis < SUB_BUCKETS) {
+                return (int) millis;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(millis);
+            int sub = (int) (millis >> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return Math.min(BUCKETS - 1, (exponent - 1) * SUB_BUCKETS + sub);
+        }
+
+        /**
+         * @return the largest value that falls into the bucket
+         */
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS - 1) {
+                return bucket;
+            }
+            int next = bucket + 1;
+            int exponent = next / SUB_BUCKETS + 1;
+            return ((long) (SUB_BUCKETS + next % SUB_BUCKETS) << (exponent - 2)) - 1;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return the latency below which that share of the recorded latencies fall, 0 if there are none
+         */
+        public long getPercentile(double quantile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        public JSONObject toJSON() throws JSONException {
+            long total = count.get();
+            JSONObject obj = new JSONObject();
+            obj.put("count", total);
+            obj.put("mean", total == 0 ? 0 : sum.get() / total);
+            obj.put("p50", getPercentile(0.5));
+            obj.put("p95", getPercentile(0.95));
+            obj.put("p99", getPercentile(0.99));
+            obj.put("max", max.get());
+            return obj;
+        }
+    }
+
+    /**
+     * Count a latency
+     *
+     * @param series    OPEN_TO_LOAD_STOP, OPEN_TO_SHOW, PAGE_LOAD or PAGE_ERROR
+     * @param url       the page, only its host is kept
+     * @param millis    the latency
+     */
+    public void record(String series, String url, long millis) {
+        for (int i = 0; i < SERIES.length; i++) {
+            if (SERIES[i].equals(series)) {
+                histogramsFor(url)[i].record(millis);
+                return;
+            }
+        }
+    }
+
+    private Histogram[] histogramsFor(String url) {
+        String host = hostOf(url);
+        Histogram[] histograms = hosts.get(host);
+        if (histograms == null) {
+            if (hosts.size() >= MAX_HOSTS) {
+                host = OTHER_HOSTS;
+            }
+            histograms = new Histogram[SERIES.length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram();
+            }
+            Histogram[] raced = hosts.putIfAbsent(host, histograms);
+            if (raced != null) {
+                histograms = raced;
+            }
+        }
+        return histograms;
+    }
+
+    private static String hostOf(String url) {
+        String host = url == null ? null : Uri.parse(url).getHost();
+        return host == null || host.length() == 0 ? NO_HOST : host;
+    }
+
+    /**
+     * @return { host: { series: { count, mean, p50, p95, p99, max } } }, latencies in milliseconds
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject result = new JSONObject();
+        for (Map.Entry<String, Histogram[]> entry : hosts.entrySet()) {
+            JSONObject host = new JSONObject();
+            Histogram[] histograms = entry.getValue();
+            for (int i = 0; i < SERIES.length; i++) {
+                if (histograms[i].getCount() > 0) {
+                    host.put(SERIES[i], histograms[i].toJSON());
+                }
+            }
+            result.put(entry.getKey(), host);
+        }
+        return result;
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        hosts.clear();
+    }
+}
@@ -0,0 +1,734 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches pages natively, ahead of the browsers' WebViews.
+ *
+ * The page of a prefetch=yes open() is fetched while the browser's WebView is still being built,
+ * so that DNS, the connection and the first bytes of the response are under way by the time the
+ * WebView asks for the page. Its body is streamed straight from the connection.
+ *
+ * The prefetch action warms the pages the app expects to open next, with the scripts and
+ * stylesheets they link to, into a PrefetchCache, at most a few at a time. Warm-ups are
+ * cancelled when the app goes to the background, see cancelWarmups().
+ *
+ * The WebViews are answered from shouldInterceptRequest(), see
+ * InAppBrowserBetaClient.interceptRequest(). Fetches go over HttpURLConnection, which keeps
+ * connections alive and reuses them. Redirects are followed, and only plain 200s are handed
+ * over, each for its own URL: the WebView gets the redirects from the server itself, then the
+ * page they lead to from here. Only responses any browser could be given are cached, see
+ * isShareable(), and they are only used while the WebView has the cookies they were fetched
+ * with. Warm-ups don't store the cookies their responses set, the user hasn't been to those
+ * pages: such responses aren't cached, the WebView gets them, and their cookies, itself.
+ */
+public class PagePrefetcher {
+
+    private static final String LOG_TAG = "PagePrefetcher";
+    static final int THREADS = 2;
+    static final int TIMEOUT = 15000;
+    // How long the WebView's request waits for the headers of a prefetch before it goes to the
+    // network itself. It blocks a WebView thread meanwhile, so it's kept short.
+    static final int TAKE_TIMEOUT = 1000;
+    static final int DEFAULT_CONCURRENCY = 2;
+    static final int MAX_CONCURRENCY = 4;
+    static final long DEFAULT_MAX_AGE = 5 * 60 * 1000;
+    // Of each page warmed, the rest of its scripts and stylesheets are left to the WebView
+    static final int MAX_SUBRESOURCES = 8;
+    static final int MAX_REDIRECTS = 5;
+    private static final String ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
+    private static final Pattern SCRIPT = Pattern.compile("<script\\b[^>]*?\\ssrc\\s*=\\s*[\"']?([^\"'\\s>]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LINK = Pattern.compile("<link\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STYLESHEET = Pattern.compile("\\srel\\s*=\\s*[\"']?stylesheet", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HREF = Pattern.compile("\\shref\\s*=\\s*[\"']?([^\"'\\s>]+)", Pattern.CASE_INSENSITIVE);
+
+    private final Context context;
+    private final PrefetchCache cache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private final ExecutorService warmers = Executors.newFixedThreadPool(MAX_CONCURRENCY);
+    // The WebView's, looked up by the first fetch
+    private volatile String userAgent;
+
+    // Guarded by queue
+    private final LinkedList<Warmup> queue = new LinkedList<Warmup>();
+    private final ArrayList<Warmup> running = new ArrayList<Warmup>();
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    /**
+     * @param context       for the WebView's user agent
+     * @param cacheCapacity the most bytes of warmed responses to keep
+     */
+    public PagePrefetcher(Context context, long cacheCapacity) {
+        this.context = context;
+        this.cache = new PrefetchCache(cacheCapacity);
+    }
+
+    /**
+     * A page being fetched, until the WebView takes it or it's cancelled
+     */
+    public static class Prefetch implements Callable<HttpURLConnection> {
+        final String url;
+        // See PrefetchCache.key()
+        private final String key;
+        // Of the page the redirects led to, once fetched
+        private volatile String finalKey;
+        private final PagePrefetcher prefetcher;
+        private Future<HttpURLConnection> future;
+        private boolean taken = false;
+
+        Prefetch(PagePrefetcher prefetcher, String url) {
+            this.prefetcher = prefetcher;
+            this.url = url;
+            this.key = PrefetchCache.key(url);
+        }
+
+        @Override
+        public HttpURLConnection call() throws IOException {
+            HttpURLConnection connection = prefetcher.fetch(url, null);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK || isTaken()) {
+                // Or given up on while the headers came in, see take()
+                connection.disconnect();
+                return null;
+            }
+            finalKey = PrefetchCache.key(connection.getURL().toString());
+            return connection;
+        }
+
+        /**
+         * @return whether a request for the url is one for the page, or for the page its
+         *         redirects led to
+         */
+        public boolean matches(String url) {
+            String asked = PrefetchCache.key(url);
+            return asked.equals(key) || asked.equals(finalKey);
+        }
+
+        /**
+         * @return whether the page was handed over or given up on
+         */
+        public synchronized boolean isTaken() {
+            return taken;
+        }
+
+        /**
+         * Wait for the response headers and hand the response over, on a WebView thread. Can
+         * only be taken once, for the URL the page was found at: a request for the prefetched
+         * URL of a redirected page leaves it for the WebView's request after the redirects.
+         * Headers that take longer than TAKE_TIMEOUT to come are given up on, the WebView would
+         * be waiting on a slow fetch instead of making its own request.
+         *
+         * @param url the url the WebView asks for, see matches()
+         * @return the response, or null for the WebView to load the url itself
+         */
+        public WebResourceResponse take(String url) {
+            HttpURLConnection connection;
+            synchronized (this) {
+                if (taken) {
+                    return null;
+                }
+            }
+            try {
+                connection = future.get(TAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancel();
+                return null;
+            } catch (ExecutionException e) {
+                Log.d(LOG_TAG, "Prefetch of " + this.url + " failed: " + e.getCause());
+                markTaken();
+                return null;
+            } catch (InterruptedException e) {
+                return null;
+            }
+            if (connection != null && !PrefetchCache.key(url).equals(finalKey)) {
+                // Redirected, the WebView asks for the final url next
+                return null;
+            }
+            if (!markTaken() || connection == null) {
+                return null;
+            }
+            try {
+                String[] type = contentType(connection);
+                return toResponse(type[0], type[1], connection.getResponseMessage(), headers(connection),
+                        connection.getInputStream());
+            } catch (IOException e) {
+                connection.disconnect();
+                return null;
+            }
+        }
+
+        /**
+         * @return false if it was taken already
+         */
+        private synchronized boolean markTaken() {
+            if (taken) {
+                return false;
+            }
+            taken = true;
+            return true;
+        }
+
+        /**
+         * Give up on the page, if the WebView hasn't taken it
+         */
+        public void cancel() {
+            if (!markTaken()) {
+                return;
+            }
+            if (!future.cancel(true)) {
+                try {
+                    HttpURLConnection connection = future.get();
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
+                } catch (Exception e) {
+                    // nothing to close
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the outcome of a warm(), on one of the prefetcher's threads
+     */
+    public interface WarmupListener {
+        /**
+         * @param fetched   how many pages and subresources were fetched or were cached already
+         * @param failed    how many couldn't be, errors and redirects included
+         * @param cancelled how many were cancelled by cancelWarmups()
+         */
+        void onWarmed(int fetched, int failed, int cancelled);
+    }
+
+    /**
+     * One warm() call
+     */
+    private static class Batch {
+        final WarmupListener listener;
+        final long maxAge;
+        final boolean subresources;
+        int pending;
+        int fetched;
+        int failed;
+        int cancelled;
+
+        Batch(WarmupListener listener, long maxAge, boolean subresources) {
+            this.listener = listener;
+            this.maxAge = maxAge;
+            this.subresources = subresources;
+        }
+    }
+
+    /**
+     * One url of a warm() call
+     */
+    private static class Warmup {
+        final Batch batch;
+        final String url;
+        final boolean page;
+        // Set once the request is made, so that cancelWarmups() can abort it
+        volatile HttpURLConnection connection;
+        volatile boolean cancelled = false;
+        // The Cookie header of the last request, null for none
+        String cookie;
+
+        Warmup(Batch batch, String url, boolean page) {
+            this.batch = batch;
+            this.url = url;
+            this.page = page;
+        }
+    }
+
+    /**
+     * Start fetching the page of an open()
+     *
+     * @param url the page, only http and https are fetched
+     * @return the fetch, or null if the URL can't be fetched natively or is cached already
+     */
+    public Prefetch start(String url) {
+        if (!isHttp(url) || find(url) != null) {
+            return null;
+        }
+        Prefetch prefetch = new Prefetch(this, url);
+        try {
+            prefetch.future = executor.submit(prefetch);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return prefetch;
+    }
+
+    /**
+     * Fetch pages into the cache, and the scripts and stylesheets they link to
+     *
+     * @param urls          the pages, only http and https are fetched
+     * @param concurrency   how many fetches may run at once, for every warm-up from now on
+     * @param maxAge        how long the responses are used for, in milliseconds
+     * @param subresources  false to only fetch the pages
+     * @param listener      told when every fetch of the call has finished
+     */
+    public void warm(List<String> urls, int concurrency, long maxAge, boolean subresources, WarmupListener listener) {
+        Batch batch = new Batch(listener, maxAge, subresources);
+        synchronized (queue) {
+            this.concurrency = Math.max(1, Math.min(MAX_CONCURRENCY, concurrency));
+            for (String url : new LinkedHashSet<String>(urls)) {
+                if (!isHttp(url)) {
+                    batch.failed++;
+                } else if (find(url) != null) {
+                    batch.fetched++;
+                } else {
+                    queue.add(new Warmup(batch, url, true));
+                    batch.pending++;
+                }
+            }
+            if (batch.pending > 0) {
+                pump();
+                return;
+            }
+        }
+        listener.onWarmed(batch.fetched, batch.failed, batch.cancelled);
+    }
+
+    /**
+     * Cancel the warm-ups under way and the queued ones, their listeners are told
+     */
+    public void cancelWarmups() {
+        ArrayList<Batch> finished = new ArrayList<Batch>();
+        ArrayList<Warmup> aborted;
+        synchronized (queue) {
+            for (Warmup warmup : queue) {
+                warmup.batch.cancelled++;
+                if (--warmup.batch.pending == 0) {
+                    finished.add(warmup.batch);
+                }
+            }
+            queue.clear();
+            aborted = new ArrayList<Warmup>(running);
+            for (Warmup warmup : aborted) {
+                warmup.cancelled = true;
+            }
+        }
+        for (Warmup warmup : aborted) {
+            // Counted when its thread gives up, see finish()
+            HttpURLConnection connection = warmup.connection;
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+        for (Batch batch : finished) {
+            batch.listener.onWarmed(batch.fetched, batch.failed, batch.cancelled);
+        }
+    }
+
+    /**
+     * @param url the url a WebView is about to fetch, called on one of its threads
+     * @return the warmed response, or null if there's none
+     */
+    public WebResourceResponse cached(String url) {
+        PrefetchCache.Entry entry = find(url);
+        if (entry == null) {
+            return null;
+        }
+        return toResponse(entry.mimeType, entry.encoding, entry.reason, entry.headers, new ByteArrayInputStream(entry.body));
+    }
+
+    /**
+     * @return whether the url has a warmed response that hasn't expired
+     */
+    public boolean isCached(String url) {
+        return find(url) != null;
+    }
+
+    /**
+     * @return the url's warmed response, if it was fetched with the cookies the WebView has now
+     */
+    private PrefetchCache.Entry find(String url) {
+        return cache.get(url, CookieManager.getInstance().getCookie(url));
+    }
+
+    /**
+     * Stop the fetches, the ones under way are abandoned
+     */
+    public void shutdown() {
+        cancelWarmups();
+        executor.shutdownNow();
+        warmers.shutdownNow();
+        cache.clear();
+    }
+
+    private static boolean isHttp(String url) {
+        String lower = url.toLowerCase(Locale.US);
+        return lower.startsWith("http://") || lower.startsWith("https://");
+    }
+
+    /**
+     * Start the queued warm-ups there's room for, with queue held
+     */
+    private void pump() {
+        while (running.size() < concurrency && !queue.isEmpty()) {
+            final Warmup warmup = queue.poll();
+            running.add(warmup);
+            try {
+                warmers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<String> subresources = null;
+                        boolean ok;
+                        try {
+                            subresources = load(warmup);
+                            ok = true;
+                        } catch (IOException e) {
+                            if (!warmup.cancelled) {
+                                Log.d(LOG_TAG, "Warming " + warmup.url + " failed: " + e.toString());
+                            }
+                            ok = false;
+                        }
+                        finish(warmup, ok, subresources);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shut down
+                running.remove(warmup);
+                queue.clear();
+                return;
+            }
+        }
+    }
+
+    private void finish(Warmup warmup, boolean ok, List<String> subresources) {
+        Batch batch = warmup.batch;
+        boolean done;
+        synchronized (queue) {
+            running.remove(warmup);
+            if (warmup.cancelled) {
+                batch.cancelled++;
+            } else if (ok) {
+                batch.fetched++;
+                if (subresources != null) {
+                    for (String url : subresources) {
+                        if (find(url) == null) {
+                            queue.add(new Warmup(batch, url, false));
+                            batch.pending++;
+                        }
+                    }
+                }
+            } else {
+                batch.failed++;
+            }
+            done = --batch.pending == 0;
+            pump();
+        }
+        if (done) {
+            batch.listener.onWarmed(batch.fetched, batch.failed, batch.cancelled);
+        }
+    }
+
+    /**
+     * Fetch a url into the cache
+     *
+     * @return the scripts and stylesheets of a page, to warm too, or null
+     */
+    private List<String> load(Warmup warmup) throws IOException {
+        HttpURLConnection connection = fetch(warmup.url, warmup);
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status);
+            }
+            if (!isShareable(connection.getHeaderFields(), warmup.cookie != null)) {
+                // The connection is warm at least
+                return null;
+            }
+            byte[] body = readBody(connection.getInputStream(), cache.getCapacity());
+            if (body == null) {
+                return null;
+            }
+            String[] type = contentType(connection);
+            cache.put(connection.getURL().toString(), new PrefetchCache.Entry(type[0], type[1], connection.getResponseMessage(),
+                    headers(connection), body, SystemClock.elapsedRealtime() + warmup.batch.maxAge, warmup.cookie));
+            if (!warmup.page || !warmup.batch.subresources || !type[0].equals("text/html")) {
+                return null;
+            }
+            return findSubresources(new String(body, "ISO-8859-1"), connection.getURL());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return the body, or null if it's over limit bytes
+     */
+    private static byte[] readBody(InputStream in, long limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try {
+            while ((read = in.read(buffer)) != -1) {
+                if (out.size() + read > limit) {
+                    return null;
+                }
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the absolute http(s) urls of the page's scripts, then of its stylesheets, each in
+     *         page order, at most MAX_SUBRESOURCES. The tags are matched, the page isn't parsed.
+     */
+    static List<String> findSubresources(String html, URL base) {
+        LinkedHashSet<String> found = new LinkedHashSet<String>();
+        Matcher script = SCRIPT.matcher(html);
+        while (found.size() < MAX_SUBRESOURCES && script.find()) {
+            add(found, base, script.group(1));
+        }
+        Matcher link = LINK.matcher(html);
+        while (found.size() < MAX_SUBRESOURCES && link.find()) {
+            String tag = link.group();
+            Matcher href = HREF.matcher(tag);
+            if (STYLESHEET.matcher(tag).find() && href.find()) {
+                add(found, base, href.group(1));
+            }
+        }
+        return new ArrayList<String>(found);
+    }
+
+    private static void add(LinkedHashSet<String> found, URL base, String href) {
+        try {
+            String url = new URL(base, href.replace("&amp;", "&")).toString();
+            int fragment = url.indexOf('#');
+            if (fragment >= 0) {
+                url = url.substring(0, fragment);
+            }
+            if (isHttp(url)) {
+                found.add(url);
+            }
+        } catch (IOException e) {
+            // not a url
+        }
+    }
+
+    /**
+     * Whether a response may be cached for every browser: a 200 to a GET, that no browser
+     * would have to revalidate, that doesn't depend on request headers the browsers may send
+     * differently, and that doesn't set cookies. A response to a request with cookies has to
+     * be marked public, it may have been made for the user of those cookies.
+     *
+     * @param headers       the response headers
+     * @param withCookies   whether the request carried cookies
+     */
+    static boolean isShareable(Map<String, List<String>> headers, boolean withCookies) {
+        boolean isPublic = false;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey();
+            if (name == null) {
+                continue;
+            }
+            name = name.toLowerCase(Locale.US);
+            for (String value : header.getValue()) {
+                String lower = value.toLowerCase(Locale.US);
+                if (name.equals("set-cookie")) {
+                    return false;
+                } else if (name.equals("vary")) {
+                    for (String field : lower.split(",")) {
+                        // The body is decoded already
+                        if (field.trim().length() > 0 && !field.trim().equals("accept-encoding")) {
+                            return false;
+                        }
+                    }
+                } else if (name.equals("pragma") && lower.contains("no-cache")) {
+                    return false;
+                } else if (name.equals("cache-control")) {
+                    for (String directive : lower.split(",")) {
+                        String token = directive.trim().replace(" ", "");
+                        if (token.startsWith("private") || token.startsWith("no-cache")
+                                || token.equals("no-store") || token.equals("max-age=0")) {
+                            return false;
+                        }
+                        isPublic |= token.equals("public");
+                    }
+                }
+            }
+        }
+        return isPublic || !withCookies;
+    }
+
+    /**
+     * Make the request, and the ones its redirects lead to, see request()
+     *
+     * @param warmup    to abort the requests with, may be null
+     * @return the connection of the last response, the one of a 200 or not
+     */
+    private HttpURLConnection fetch(String url, Warmup warmup) throws IOException {
+        for (int redirects = 0; ; redirects++) {
+            HttpURLConnection connection = connect(url);
+            if (warmup != null) {
+                warmup.connection = connection;
+                if (warmup.cancelled) {
+                    connection.disconnect();
+                    throw new IOException("Cancelled");
+                }
+            }
+            String cookie = CookieManager.getInstance().getCookie(url);
+            if (warmup != null) {
+                warmup.cookie = cookie;
+            }
+            // Warm-ups are of pages the user may never open, they leave the cookies alone
+            int status = request(connection, url, cookie, warmup == null);
+            String location = connection.getHeaderField("Location");
+            if (status < 300 || status > 308 || status == HttpURLConnection.HTTP_NOT_MODIFIED
+                    || location == null || redirects == MAX_REDIRECTS) {
+                return connection;
+            }
+            String next = new URL(connection.getURL(), location).toString();
+            if (!isHttp(next)) {
+                return connection;
+            }
+            connection.disconnect();
+            url = next;
+        }
+    }
+
+    private HttpURLConnection connect(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        return connection;
+    }
+
+    /**
+     * Make the request as the WebView would, with its user agent and cookies
+     *
+     * @param cookie        the WebView's cookies for the url, may be null
+     * @param storeCookies  whether to store the cookies the response sets, as the WebView would
+     * @return the status
+     */
+    @SuppressLint("NewApi")
+    private int request(HttpURLConnection connection, String url, String cookie, boolean storeCookies) throws IOException {
+        if (userAgent == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            userAgent = WebSettings.getDefaultUserAgent(context);
+        }
+        CookieManager cookies = CookieManager.getInstance();
+        connection.setRequestProperty("Accept", ACCEPT);
+        if (userAgent != null) {
+            connection.setRequestProperty("User-Agent", userAgent);
+        }
+        if (cookie != null) {
+            connection.setRequestProperty("Cookie", cookie);
+        }
+        int status = connection.getResponseCode();
+        // The WebView ignores the cookies of intercepted responses, so they are stored here
+        List<String> setCookies = connection.getHeaderFields().get("Set-Cookie");
+        if (setCookies != null && storeCookies) {
+            for (String setCookie : setCookies) {
+                cookies.setCookie(url, setCookie);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @return the mime type, text/html if there's none, and the charset, or null
+     */
+    private static String[] contentType(HttpURLConnection connection) {
+        String mimeType = "text/html";
+        String encoding = null;
+        String contentType = connection.getContentType();
+        if (contentType != null) {
+            String[] parts = contentType.split(";");
+            if (parts[0].trim().length() > 0) {
+                mimeType = parts[0].trim().toLowerCase(Locale.US);
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i].trim();
+                if (part.toLowerCase(Locale.US).startsWith("charset=")) {
+                    encoding = part.substring("charset=".length()).replace("\"", "");
+                }
+            }
+        }
+        return new String[] { mimeType, encoding };
+    }
+
+    /**
+     * @return the response headers that still apply to the body handed over: it is decoded
+     *         already, and its cookies are stored
+     */
+    private static Map<String, String> headers(HttpURLConnection connection) {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            String name = header.getKey();
+            if (name == null || header.getValue().isEmpty()) {
+                continue;
+            }
+            String lower = name.toLowerCase(Locale.US);
+            if (lower.equals("content-length") || lower.equals("content-encoding")
+                    || lower.equals("transfer-encoding") || lower.equals("set-cookie")) {
+                continue;
+            }
+            headers.put(name, header.getValue().get(header.getValue().size() - 1));
+        }
+        return headers;
+    }
+
+    @SuppressLint("NewApi")
+    private static WebResourceResponse toResponse(String mimeType, String encoding, String reason,
+                                                  Map<String, String> headers, InputStream body) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return new WebResourceResponse(mimeType, encoding, body);
+        }
+        return new WebResourceResponse(mimeType, encoding, HttpURLConnection.HTTP_OK,
+                reason == null || reason.trim().length() == 0 ? "OK" : reason, headers, body);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.webkit.WebBackForwardList;
+import android.webkit.WebHistoryItem;
+import android.webkit.WebView;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where a browser was: the URLs of its history up to the current page, and how far the page
+ * was scrolled. Unlike WebView.saveState(), it can be written to disk in a format of our own,
+ * see BrowserSnapshots, and rebuilt by loading the current page again.
+ */
+public class PageState {
+
+    // The most history entries kept, the oldest go first
+    static final int MAX_HISTORY = 50;
+    // Longer strings in a stream are taken as a corrupt file
+    private static final int MAX_STRING_BYTES = 1024 * 1024;
+    // Pages with longer URLs, big data: URLs, are left out of the history
+    private static final int MAX_URL_LENGTH = MAX_STRING_BYTES / 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Oldest first, the last one is the current page
+    final List<String> history;
+    final int scrollX;
+    final int scrollY;
+
+    /**
+     * @param history   the URLs of the pages up to the current one, oldest first, not empty
+     * @param scrollX   the horizontal scroll position of the current page
+     * @param scrollY   its vertical scroll position
+     */
+    public PageState(List<String> history, int scrollX, int scrollY) {
+        if (history.isEmpty()) {
+            throw new IllegalArgumentException("No current page");
+        }
+        int from = Math.max(0, history.size() - MAX_HISTORY);
+        this.history = Collections.unmodifiableList(new ArrayList<String>(history.subList(from, history.size())));
+        this.scrollX = scrollX;
+        this.scrollY = scrollY;
+    }
+
+    /**
+     * @return the page to load
+     */
+    public String getUrl() {
+        return history.get(history.size() - 1);
+    }
+
+    /**
+     * @return the pages before the current one, oldest first
+     */
+    public List<String> getBack() {
+        return history.subList(0, history.size() - 1);
+    }
+
+    /**
+     * Read where a WebView is, without saving its whole state. Must be called on the UI thread.
+     *
+     * @return its state, or null if it has no page
+     */
+    public static PageState capture(WebView view) {
+        WebBackForwardList list = view.copyBackForwardList();
+        int current = list.getCurrentIndex();
+        if (current < 0) {
+            return null;
+        }
+        ArrayList<String> history = new ArrayList<String>(current + 1);
+        for (int i = Math.max(0, current + 1 - MAX_HISTORY); i <= current; i++) {
+            WebHistoryItem item = list.getItemAtIndex(i);
+            if (item != null && item.getUrl() != null && item.getUrl().length() <= MAX_URL_LENGTH) {
+                history.add(item.getUrl());
+            }
+        }
+        return history.isEmpty() ? null : new PageState(history, view.getScrollX(), view.getScrollY());
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(history.size());
+        for (String url : history) {
+            writeString(out, url);
+        }
+        out.writeInt(scrollX);
+        out.writeInt(scrollY);
+    }
+
+    /**
+     * @throws IOException if the stream ends early or doesn't hold a page state
+     */
+    public static PageState read(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count <= 0 || count > MAX_HISTORY) {
+            throw new IOException("Bad history length " + count);
+        }
+        ArrayList<String> history = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            history.add(readString(in));
+        }
+        int scrollX = in.readInt();
+        int scrollY = in.readInt();
+        return new PageState(history, scrollX, scrollY);
+    }
+
+    /**
+     * Unlike DataOutput.writeUTF(), not limited to 64 KB, which data: URLs can be over
+     */
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.os.SystemClock;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The responses fetched by the prefetch action, kept in memory until they expire, for the
+ * browsers' WebViews to be answered from, see PagePrefetcher.
+ *
+ * The bodies add up to at most the capacity in bytes. Adding past it drops the least recently
+ * used responses first. Responses are found by the URL the WebView asks for in any spelling of
+ * it, see key(), and only while the WebView would send the cookies they were fetched with.
+ */
+public class PrefetchCache {
+
+    /**
+     * A 200 response
+     */
+    public static class Entry {
+        final String mimeType;
+        final String encoding;
+        final String reason;
+        // Without the headers that don't apply to the stored body, see PagePrefetcher
+        final Map<String, String> headers;
+        final byte[] body;
+        // SystemClock.elapsedRealtime() after which it isn't used
+        final long expiresAt;
+        // The Cookie header of the request, null for none
+        final String cookie;
+
+        Entry(String mimeType, String encoding, String reason, Map<String, String> headers, byte[] body, long expiresAt,
+              String cookie) {
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.reason = reason;
+            this.headers = headers;
+            this.body = body;
+            this.expiresAt = expiresAt;
+            this.cookie = cookie;
+        }
+    }
+
+    private final long capacity;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * @param capacity the most bytes of bodies to keep
+     */
+    public PrefetchCache(long capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return false if the body alone is over the capacity, and isn't kept
+     */
+    public synchronized boolean put(String url, Entry entry) {
+        if (entry.body.length > capacity) {
+            return false;
+        }
+        url = key(url);
+        Entry previous = entries.remove(url);
+        if (previous != null) {
+            size -= previous.body.length;
+        }
+        entries.put(url, entry);
+        size += entry.body.length;
+        Iterator<Entry> it = entries.values().iterator();
+        while (size > capacity && it.hasNext()) {
+            size -= it.next().body.length;
+            it.remove();
+        }
+        return true;
+    }
+
+    /**
+     * @param cookie    the Cookie header the WebView would send for the url now, null for none
+     * @return the url's response, or null if there's none that hasn't expired and was fetched
+     *         with the same cookies. One fetched before a login, say, isn't the user's page.
+     */
+    public synchronized Entry get(String url, String cookie) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        url = key(url);
+        Entry entry = entries.get(url);
+        if (entry != null && (SystemClock.elapsedRealtime() > entry.expiresAt
+                || (cookie == null ? entry.cookie != null : !cookie.equals(entry.cookie)))) {
+            entries.remove(url);
+            size -= entry.body.length;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @return the url without its fragment, which is never sent, and with the scheme and host
+     *         in lower case, without the default port and with "/" for an empty path, the
+     *         spellings of the same request. Returned as is if it isn't an absolute URL.
+     */
+    static String key(String url) {
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            return url;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || host == null || uri.getRawUserInfo() != null) {
+            return url;
+        }
+        scheme = scheme.toLowerCase(Locale.US);
+        int port = uri.getPort();
+        if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+            port = -1;
+        }
+        String path = uri.getRawPath();
+        StringBuilder key = new StringBuilder(url.length() + 1);
+        key.append(scheme).append("://").append(host.toLowerCase(Locale.US));
+        if (port >= 0) {
+            key.append(':').append(port);
+        }
+        key.append(path == null || path.length() == 0 ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            key.append('?').append(uri.getRawQuery());
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the bytes of bodies kept
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the subresource requests of one WebView's current page, for the resourcetiming event.
+ *
+ * The start of each request is seen natively, in shouldInterceptRequest(), which runs on a
+ * WebView thread. The WebView does the fetching itself, so when a request ends and how big the
+ * response was can't be seen from there. Those come from the page's Resource Timing entries
+ * instead, read with READ_ENTRIES_SCRIPT once the page has loaded, where the WebView has them.
+ * The entries also give the start of the requests that weren't seen natively.
+ *
+ * At most MAX_REQUESTS requests are kept per page, the rest are only counted.
+ */
+public class ResourceTimings {
+
+    static final int MAX_REQUESTS = 512;
+    static final int TOP_HOSTS = 5;
+
+    /**
+     * Evaluates to [[url, duration, bytes, start], ...] from the Resource Timing API, or null
+     * without it. bytes is 0 where the WebView doesn't expose sizes, start is in milliseconds
+     * from the start of the navigation.
+     */
+    public static final String READ_ENTRIES_SCRIPT = "(function(p) {"
+            + " if (!p || !p.getEntriesByType) { return null; }"
+            + " return p.getEntriesByType('resource').map(function(e) {"
+            + " return [e.name, Math.round(e.duration), e.transferSize || e.encodedBodySize || 0, Math.round(e.startTime)]; });"
+            + " })(window.performance)";
+
+    private static class Request {
+        final String url;
+        final String type;
+        // Milliseconds from the start of the page, -1 if unknown
+        long start;
+        long duration = -1;
+        long bytes = -1;
+
+        Request(String url, long start) {
+            this.url = url;
+            this.type = typeOf(url);
+            this.start = start;
+        }
+    }
+
+    private static final Comparator<Request> BY_START = new Comparator<Request>() {
+        @Override
+        public int compare(Request a, Request b) {
+            // Unknown starts go last
+            if (a.start < 0 || b.start < 0) {
+                return a.start < 0 ? (b.start < 0 ? 0 : 1) : -1;
+            }
+            return a.start < b.start ? -1 : (a.start == b.start ? 0 : 1);
+        }
+    };
+
+    private static class HostTotals {
+        final String host;
+        int count;
+        long totalTime;
+        long maxTime;
+
+        HostTotals(String host) {
+            this.host = host;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Request> requests = new ConcurrentHashMap<String, Request>();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private volatile long pageStart = SystemClock.elapsedRealtime();
+
+    /**
+     * Start over for a new page, request starts count from now
+     */
+    public void reset() {
+        requests.clear();
+        dropped.set(0);
+        pageStart = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * A request is about to be made, called from shouldInterceptRequest()
+     *
+     * @param url the resource
+     */
+    public void onRequest(String url) {
+        if (requests.size() >= MAX_REQUESTS) {
+            dropped.incrementAndGet();
+            return;
+        }
+        requests.putIfAbsent(url, new Request(url, SystemClock.elapsedRealtime() - pageStart));
+    }
+
+    /**
+     * Merge in the page's Resource Timing entries and sum everything up
+     *
+     * @param entries   the value of READ_ENTRIES_SCRIPT, or null if it couldn't be read
+     * @return { requests, timed, dropped, types: { type: { count, bytes } },
+     *           slowestHosts: [ { host, count, totalTime, maxTime } ],
+     *           timeline: [ [url, start, duration], ... ] }, the timeline in order of start,
+     *           with -1 for what isn't known
+     */
+    public JSONObject summarize(JSONArray entries) throws JSONException {
+        HashMap<String, Request> merged = new HashMap<String, Request>();
+        // Copies, the entries are merged into them
+        for (Request request : requests.values()) {
+            Request copy = new Request(request.url, request.start);
+            merged.put(copy.url, copy);
+        }
+        int droppedCount = dropped.get();
+        if (entries != null) {
+            for (int i = 0; i < entries.length(); i++) {
+                JSONArray entry = entries.optJSONArray(i);
+                if (entry == null) {
+                    continue;
+                }
+                String url = entry.optString(0);
+                Request request = merged.get(url);
+                if (request == null) {
+                    // Served without a request we saw, from the memory cache for instance
+                    if (merged.size() >= MAX_REQUESTS) {
+                        droppedCount++;
+                        continue;
+                    }
+                    request = new Request(url, -1);
+                    merged.put(url, request);
+                }
+                if (request.start < 0) {
+                    request.start = entry.optLong(3, -1);
+                }
+                request.duration = entry.optLong(1, -1);
+                long bytes = entry.optLong(2, 0);
+                request.bytes = bytes > 0 ? bytes : -1;
+            }
+        }
+
+        HashMap<String, long[]> types = new HashMap<String, long[]>();
+        HashMap<String, HostTotals> hosts = new HashMap<String, HostTotals>();
+        int timed = 0;
+        for (Map.Entry<String, Request> entry : merged.entrySet()) {
+            Request request = entry.getValue();
+            long[] type = types.get(request.type);
+            if (type == null) {
+                type = new long[2];
+                types.put(request.type, type);
+            }
+            type[0]++;
+            if (request.bytes > 0) {
+                type[1] += request.bytes;
+            }
+
+            String host = Uri.parse(entry.getKey()).getHost();
+            if (host == null) {
+                continue;
+            }
+            HostTotals totals = hosts.get(host);
+            if (totals == null) {
+                totals = new HostTotals(host);
+                hosts.put(host, totals);
+            }
+            totals.count++;
+            if (request.duration >= 0) {
+                timed++;
+                totals.totalTime += request.duration;
+                totals.maxTime = Math.max(totals.maxTime, request.duration);
+            }
+        }
+
+        ArrayList<HostTotals> slowest = new ArrayList<HostTotals>(hosts.values());
+        Collections.sort(slowest, new Comparator<HostTotals>() {
+            @Override
+            public int compare(HostTotals a, HostTotals b) {
+                // Without any durations this orders by request count
+                if (a.totalTime != b.totalTime) {
+                    return a.totalTime < b.totalTime ? 1 : -1;
+                }
+                return b.count - a.count;
+            }
+        });
+
+        JSONObject summary = new JSONObject();
+        summary.put("requests", merged.size());
+        summary.put("timed", timed);
+        summary.put("dropped", droppedCount);
+        JSONObject typesJSON = new JSONObject();
+        for (Map.Entry<String, long[]> entry : types.entrySet()) {
+            JSONObject type = new JSONObject();
+            type.put("count", entry.getValue()[0]);
+            type.put("bytes", entry.getValue()[1]);
+            typesJSON.put(entry.getKey(), type);
+        }
+        summary.put("types", typesJSON);
+        JSONArray hostsJSON = new JSONArray();
+        for (int i = 0; i < slowest.size() && i < TOP_HOSTS; i++) {
+            HostTotals totals = slowest.get(i);
+            JSONObject host = new JSONObject();
+            host.put("host", totals.host);
+            host.put("count", totals.count);
+            host.put("totalTime", totals.totalTime);
+            host.put("maxTime", totals.maxTime);
+            hostsJSON.put(host);
+        }
+        summary.put("slowestHosts", hostsJSON);
+        ArrayList<Request> timeline = new ArrayList<Request>(merged.values());
+        Collections.sort(timeline, BY_START);
+        JSONArray timelineJSON = new JSONArray();
+        for (Request request : timeline) {
+            timelineJSON.put(new JSONArray().put(request.url).put(request.start).put(request.duration));
+        }
+        summary.put("timeline", timelineJSON);
+        return summary;
+    }
+
+    /**
+     * Guess the kind of resource from the extension of its path
+     *
+     * @return script, stylesheet, image, font, media or other
+     */
+    static String typeOf(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        int dot = url.lastIndexOf('.', end);
+        if (dot < 0 || dot < url.lastIndexOf('/', end)) {
+            return "other";
+        }
+        String extension = url.substring(dot + 1, end).toLowerCase(Locale.US);
+        if (extension.equals("js")) {
+            return "script";
+        } else if (extension.equals("css")) {
+            return "stylesheet";
+        } else if (extension.equals("png") || extension.equals("jpg") || extension.equals("jpeg") || extension.equals("gif")
+                || extension.equals("webp") || extension.equals("svg") || extension.equals("ico")) {
+            return "image";
+        } else if (extension.equals("woff") || extension.equals("woff2") || extension.equals("ttf") || extension.equals("otf")
+                || extension.equals("eot")) {
+            return "font";
+        } else if (extension.equals("mp4") || extension.equals("webm") || extension.equals("mp3") || extension.equals("ogg")
+                || extension.equals("m4a")) {
+            return "media";
+        }
+        return "other";
+    }
+}
@@ -0,0 +1,205 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.app.Activity;
+import android.content.ActivityNotFoundException;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Decides what to do with a URL the browser is about to navigate to, before any load starts.
+ *
+ * URLs are routed by scheme through a lookup table. tel:, sms:, geo:, mailto: and market: are
+ * handed to other apps, and apps can register schemes of their own, see register(). Anything
+ * not in the table (http:, https:, file:, ...) is left to the WebView.
+ *
+ * Whether some activity handles a scheme is looked up once and remembered, so repeated taps
+ * on such links don't query the package manager each time. Apps come and go while ours is in
+ * the background, so the plugin forgets the answers on resume, see forgetResolved().
+ */
+public class SchemeRouter {
+
+    private static final String LOG_TAG = "SchemeRouter";
+
+    /**
+     * The URL isn't routed, let the WebView load it
+     */
+    public static final int NOT_ROUTED = 0;
+    /**
+     * The URL was handed to another app, or dropped because no app takes it
+     */
+    public static final int HANDLED = 1;
+    /**
+     * The URL has an app-registered scheme that should be reported to the JavaScript side
+     */
+    public static final int DELIVER = 2;
+
+    /**
+     * How a scheme is handled
+     */
+    private static class Route {
+        final String action;
+
+        /**
+         * @param action the intent action, or null to deliver the URL to the app
+         */
+        Route(String action) {
+            this.action = action;
+        }
+
+        Intent createIntent(String url) {
+            Intent intent = new Intent(action);
+            intent.setData(Uri.parse(url));
+            return intent;
+        }
+    }
+
+    // sms:5551212?body=This is the message
+    private static final Route SMS_ROUTE = new Route(Intent.ACTION_VIEW) {
+        @Override
+        Intent createIntent(String url) {
+            Intent intent = new Intent(Intent.ACTION_VIEW);
+
+            // Get address
+            String address;
+            int parmIndex = url.indexOf('?');
+            if (parmIndex == -1) {
+                address = url.substring(4);
+            } else {
+                address = url.substring(4, parmIndex);
+
+                // If body, then set sms body
+                String query = Uri.parse(url).getQuery();
+                if (query != null && query.startsWith("body=")) {
+                    intent.putExtra("sms_body", query.substring(5));
+                }
+            }
+            // No MIME type, setType() would clear the data
+            intent.setData(Uri.parse("sms:" + address));
+            intent.putExtra("address", address);
+            return intent;
+        }
+    };
+
+    private final HashMap<String, Route> routes = new HashMap<String, Route>();
+    private final HashMap<String, Boolean> resolved = new HashMap<String, Boolean>();
+
+    public SchemeRouter() {
+        routes.put("tel", new Route(Intent.ACTION_DIAL));
+        routes.put("sms", SMS_ROUTE);
+        routes.put("geo", new Route(Intent.ACTION_VIEW));
+        routes.put("mailto", new Route(Intent.ACTION_VIEW));
+        routes.put("market", new Route(Intent.ACTION_VIEW));
+    }
+
+    /**
+     * Route an app-specific scheme, replacing any route the scheme had
+     *
+     * @param scheme    the scheme, without the colon
+     * @param external  true to hand the URLs to whichever app takes them, false to report them
+     *                  to the JavaScript side instead of loading them
+     */
+    public synchronized void register(String scheme, boolean external) {
+        scheme = scheme.toLowerCase(Locale.US);
+        routes.put(scheme, new Route(external ? Intent.ACTION_VIEW : null));
+        resolved.remove(scheme);
+    }
+
+    /**
+     * Forget which schemes some activity handles, they are looked up again on their next URL
+     */
+    public synchronized void forgetResolved() {
+        resolved.clear();
+    }
+
+    /**
+     * Route a URL
+     *
+     * @param activity  starts the intent, if the URL is for another app. With none, as with
+     *                  headless engines, such URLs are dropped.
+     * @param url       the URL about to be loaded
+     * @return NOT_ROUTED, HANDLED or DELIVER
+     */
+    public int route(Activity activity, String url) {
+        String scheme = getScheme(url);
+        if (scheme == null) {
+            return NOT_ROUTED;
+        }
+        Route route;
+        Boolean resolvable;
+        synchronized (this) {
+            route = routes.get(scheme);
+            resolvable = resolved.get(scheme);
+        }
+        if (route == null) {
+            return NOT_ROUTED;
+        }
+        if (route.action == null) {
+            return DELIVER;
+        }
+        if (activity == null) {
+            return HANDLED;
+        }
+
+        Intent intent = route.createIntent(url);
+        if (resolvable == null) {
+            resolvable = intent.resolveActivity(activity.getPackageManager()) != null;
+            synchronized (this) {
+                resolved.put(scheme, resolvable);
+            }
+        }
+        if (!resolvable) {
+            Log.d(LOG_TAG, "No activity for " + scheme + ": URLs, dropping " + url);
+            return HANDLED;
+        }
+        try {
+            activity.startActivity(intent);
+        } catch (ActivityNotFoundException e) {
+            Log.e(LOG_TAG, "Error with " + url + ": " + e.toString());
+            synchronized (this) {
+                resolved.remove(scheme);
+            }
+        }
+        return HANDLED;
+    }
+
+    /**
+     * The lower case scheme of a URL, without parsing the rest of it
+     *
+     * @return the scheme, or null if the URL has none
+     */
+    static String getScheme(String url) {
+        int colon = url.indexOf(':');
+        if (colon <= 0) {
+            return null;
+        }
+        for (int i = 0; i < colon; i++) {
+            char c = url.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '+' || c == '-' || c == '.')) {
+                return null;
+            }
+        }
+        return url.substring(0, colon).toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The plugin's UI thread tasks. Tasks posted while one message is pending join it, so a burst of
+ * view changes costs one Handler message instead of one each, and a message runs at most about
+ * half a frame's worth of tasks before leaving the rest to the next one.
+ *
+ * A task posted with a key replaces the pending task with the same key, if there is one. That
+ * drops the operations that a later one makes moot, a show followed by a hide for instance.
+ * Tasks run in the order they were posted, a replacement taking the place of the last post.
+ */
+public class UiTaskQueue {
+
+    private static final long FLUSH_BUDGET_NANOS = 8000000;
+
+    private static class Task {
+        final String action;
+        final Runnable runnable;
+        final long postedAt;
+
+        Task(String action, Runnable runnable, long postedAt) {
+            this.action = action;
+            this.runnable = runnable;
+            this.postedAt = postedAt;
+        }
+    }
+
+    private final Executor thread;
+    private final ActionTimings timings;
+    // Unkeyed tasks are their own key
+    private final LinkedHashMap<Object, Task> pending = new LinkedHashMap<Object, Task>();
+    private boolean scheduled;
+
+    // Replaced on reset()
+    private volatile NavigationMetrics.Histogram latency = new NavigationMetrics.Histogram();
+    private volatile NavigationMetrics.Histogram depth = new NavigationMetrics.Histogram();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param thread    posts to the UI thread, a Handler on its Looper on a device
+     * @param timings   where the time of each task goes, by action
+     */
+    public UiTaskQueue(Executor thread, ActionTimings timings) {
+        this.thread = thread;
+        this.timings = timings;
+    }
+
+    /**
+     * @param action    the action the task is for, see ActionTimings, or null
+     */
+    public void post(String action, Runnable task) {
+        post(action, null, task);
+    }
+
+    /**
+     * @param action    the action the task is for, see ActionTimings, or null
+     * @param key       a pending task with an equal key is dropped, null to keep them all
+     */
+    public void post(String action, Object key, Runnable task) {
+        Task queued = new Task(action, task, System.nanoTime());
+        synchronized (this) {
+            if (key == null) {
+                key = queued;
+            } else if (pending.remove(key) != null) {
+                superseded.incrementAndGet();
+            }
+            pending.put(key, queued);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        messages.incrementAndGet();
+        thread.execute(flush);
+    }
+
+    /**
+     * Run the pending tasks, including those they post, until the budget runs out or a task
+     * throws
+     */
+    private void flush() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            depth.record(pending.size());
+        }
+        while (true) {
+            Task task;
+            synchronized (this) {
+                Iterator<Task> it = pending.values().iterator();
+                if (!it.hasNext()) {
+                    scheduled = false;
+                    return;
+                }
+                if (System.nanoTime() - start > FLUSH_BUDGET_NANOS) {
+                    break;
+                }
+                task = it.next();
+                it.remove();
+            }
+            long begin = System.nanoTime();
+            latency.record((begin - task.postedAt) / 1000);
+            boolean ran = false;
+            try {
+                task.runnable.run();
+                ran = true;
+            } finally {
+                if (task.action != null) {
+                    timings.record(task.action, ActionTimings.UI, System.nanoTime() - begin);
+                }
+                if (!ran) {
+                    // The exception goes on to the thread, the tasks after this one still run
+                    // in the next message instead of waiting forever
+                    schedule();
+                }
+            }
+        }
+        // Still scheduled, the rest goes in the next message
+        schedule();
+    }
+
+    /**
+     * @return the number of tasks waiting to run
+     */
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    /**
+     * @return { pending, messages, superseded, depth: {...}, latency: {...} }, where depth is the
+     *         number of tasks waiting at each message and latency the microseconds from posting a
+     *         task to running it
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject obj = new JSONObject();
+        obj.put("pending", getDepth());
+        obj.put("messages", messages.get());
+        obj.put("superseded", superseded.get());
+        obj.put("depth", depth.toJSON());
+        obj.put("latency", latency.toJSON());
+        return obj;
+    }
+
+    /**
+     * Forget the counts so far
+     */
+    public void reset() {
+        latency = new NavigationMetrics.Histogram();
+        depth = new NavigationMetrics.Histogram();
+        messages.set(0);
+        superseded.set(0);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.View;
+import android.webkit.RenderProcessGoneDetail;
+import android.webkit.WebResourceRequest;
+import android.webkit.ValueCallback;
+import android.webkit.WebBackForwardList;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+/**
+ * The BrowserEngine of a device, an android.webkit.WebView. Everything here must be called on
+ * the UI thread.
+ *
+ * Built against API 26 or later, for onRenderProcessGone(), while running on older devices: the
+ * calls to anything newer than the oldest supported WebView check Build.VERSION.SDK_INT first.
+ */
+@SuppressLint({"JavascriptInterface", "AddJavascriptInterface"})
+public class WebViewEngine implements BrowserEngine {
+
+    private final WebView view;
+
+    /**
+     * @param view the WebView, configured already, see InAppBrowserBeta.createWebView()
+     */
+    public WebViewEngine(WebView view) {
+        this.view = view;
+    }
+
+    /**
+     * @return the WebView, to lay out and focus
+     */
+    public WebView getView() {
+        return view;
+    }
+
+    /**
+     * Hands the WebViewClient callbacks over to a Client
+     */
+    private class Adapter extends WebViewClient {
+        private final Client client;
+
+        Adapter(Client client) {
+            this.client = client;
+        }
+
+        @Override
+        public boolean shouldOverrideUrlLoading(WebView view, String url) {
+            return client.shouldOverrideUrlLoading(WebViewEngine.this, url);
+        }
+
+        @Override
+        public void onPageStarted(WebView view, String url, Bitmap favicon) {
+            client.onPageStarted(WebViewEngine.this, url);
+        }
+
+        @Override
+        public void onPageFinished(WebView view, String url) {
+            client.onPageFinished(WebViewEngine.this, url);
+        }
+
+        @Override
+        public void onReceivedError(WebView view, int errorCode, String description, String failingUrl) {
+            client.onReceivedError(WebViewEngine.this, errorCode, description, failingUrl);
+        }
+
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebView view, String url) {
+            client.onResourceRequest(WebViewEngine.this, url);
+            return client.interceptRequest(WebViewEngine.this, url);
+        }
+
+        @Override
+        @SuppressLint("NewApi")
+        public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+            String url = request.getUrl().toString();
+            client.onResourceRequest(WebViewEngine.this, url);
+            // A form post mustn't be answered with what a GET fetched
+            return "GET".equals(request.getMethod()) ? client.interceptRequest(WebViewEngine.this, url) : null;
+        }
+
+        // Only called from Oreo on
+        @Override
+        @SuppressLint("NewApi")
+        public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+            return client.onRenderProcessGone(WebViewEngine.this, detail.didCrash());
+        }
+    }
+
+    @Override
+    public void setClient(Client client) {
+        view.setWebViewClient(client == null ? new WebViewClient() : new Adapter(client));
+    }
+
+    @Override
+    public void loadUrl(String url) {
+        view.loadUrl(url);
+    }
+
+    @Override
+    public String getUrl() {
+        return view.getUrl();
+    }
+
+    @Override
+    public void stopLoading() {
+        view.stopLoading();
+    }
+
+    @Override
+    public boolean canGoBack() {
+        return view.canGoBack();
+    }
+
+    @Override
+    public void goBack() {
+        view.goBack();
+    }
+
+    @Override
+    public boolean canGoForward() {
+        return view.canGoForward();
+    }
+
+    @Override
+    public void goForward() {
+        view.goForward();
+    }
+
+    @Override
+    public void clearHistory() {
+        view.clearHistory();
+    }
+
+    @Override
+    public void clearCache(boolean includeDiskFiles) {
+        view.clearCache(includeDiskFiles);
+    }
+
+    /**
+     * @return true if WebView.evaluateJavascript() is available (KitKat and up)
+     */
+    public static boolean canEvaluateJavascript() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Uses evaluateJavascript() where it exists, which doesn't blur the focused element the way
+     * a javascript: URL does, and falls back to loadUrl() elsewhere, in which case the callback
+     * is never called.
+     */
+    @Override
+    @SuppressLint("NewApi")
+    public void evaluateJavascript(String script, ValueCallback<String> callback) {
+        if (canEvaluateJavascript()) {
+            view.evaluateJavascript(script, callback);
+            return;
+        }
+        // This will have the side-effect of blurring the currently focused element
+        view.loadUrl("javascript:" + script);
+    }
+
+    @Override
+    public void addJavascriptInterface(Object object, String name) {
+        view.addJavascriptInterface(object, name);
+    }
+
+    @Override
+    @SuppressLint("NewApi")
+    public void removeJavascriptInterface(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            view.removeJavascriptInterface(name);
+        }
+    }
+
+    /**
+     * Also lets the renderer be killed before the app's under memory pressure (Oreo and up)
+     */
+    @Override
+    @SuppressLint("NewApi")
+    public void onPause() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            view.onPause();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            view.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_WAIVED, true);
+        }
+    }
+
+    @Override
+    @SuppressLint("NewApi")
+    public void onResume() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            view.onResume();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            view.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_IMPORTANT, false);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        view.destroy();
+    }
+
+    /**
+     * Show or hide the WebView, keeping its place in the layout
+     */
+    public void setVisible(boolean visible) {
+        view.setVisibility(visible ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * @return false if there was nothing to save, see WebView.saveState()
+     */
+    public boolean saveState(Bundle state) {
+        return view.saveState(state) != null;
+    }
+
+    /**
+     * @return the history brought back, or null if the state couldn't be restored
+     */
+    public WebBackForwardList restoreState(Bundle state) {
+        return view.restoreState(state);
+    }
+}
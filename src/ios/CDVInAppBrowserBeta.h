@@ -37,6 +37,8 @@
 - (void)hide:(CDVInvokedUrlCommand*)command;
 - (void)loadedStatus:(CDVInvokedUrlCommand*)command;
 - (void)notifyStatus:(CDVInvokedUrlCommand*)command;
+- (void)subscribe:(CDVInvokedUrlCommand*)command;
+- (void)unsubscribe:(CDVInvokedUrlCommand*)command;
 - (void)injectScriptCode:(CDVInvokedUrlCommand*)command;
 - (void)show:(CDVInvokedUrlCommand*)command;
 
@@ -93,6 +93,15 @@
 	}
 }
 
+- (void)subscribe:(CDVInvokedUrlCommand*)command
+{
+	// Only Android filters events by subscription, every event is sent here
+}
+
+- (void)unsubscribe:(CDVInvokedUrlCommand*)command
+{
+}
+
 - (void)close:(CDVInvokedUrlCommand*)command
 {
 	if (self.inAppBrowserViewController == nil) {
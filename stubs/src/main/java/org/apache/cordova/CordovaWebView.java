@@ -0,0 +1,43 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import android.content.Context;
+import android.webkit.WebView;
+
+/**
+ * Build-time stand-in for the cordova-android 3.x class. Like the real one it is a WebView, so
+ * it can only be constructed on a device.
+ */
+public class CordovaWebView extends WebView {
+
+    public CordovaWebView(Context context) {
+        super(context);
+    }
+
+    public void sendPluginResult(PluginResult result, String callbackId) {
+    }
+
+    public void sendJavascript(String statement) {
+    }
+
+    public CordovaResourceApi getResourceApi() {
+        return null;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ActionTimingsTest {
+
+    @Test
+    public void recordsMicrosecondsPerThread() throws Exception {
+        ActionTimings timings = new ActionTimings();
+        timings.record("open", ActionTimings.WORKER, 2000000);
+        timings.record("open", ActionTimings.UI, 500000);
+        timings.record("close", ActionTimings.UI, 1000);
+
+        JSONObject json = timings.toJSON();
+        assertEquals(2000, json.getJSONObject("open").getJSONObject("worker").getLong("max"));
+        assertEquals(500, json.getJSONObject("open").getJSONObject("ui").getLong("max"));
+        assertFalse(json.getJSONObject("close").has("worker"));
+        assertEquals(1, json.getJSONObject("close").getJSONObject("ui").getLong("count"));
+    }
+
+    @Test
+    public void groupsInjectAndWaitActions() throws Exception {
+        ActionTimings timings = new ActionTimings();
+        timings.record("injectScriptCode", ActionTimings.WORKER, 1000);
+        timings.record("injectStyleFile", ActionTimings.WORKER, 1000);
+        timings.record("waitForSelector", ActionTimings.WORKER, 1000);
+        timings.record("waitForCondition", ActionTimings.WORKER, 1000);
+        timings.record("loadedStatus", ActionTimings.WORKER, 1000);
+
+        JSONObject json = timings.toJSON();
+        assertEquals(2, json.length());
+        assertEquals(2, json.getJSONObject("inject").getJSONObject("worker").getLong("count"));
+        assertEquals(3, json.getJSONObject("wait").getJSONObject("worker").getLong("count"));
+
+        timings.reset();
+        assertEquals(0, timings.toJSON().length());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BrowserSnapshotsTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("snapshots", "");
+        dir.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static BrowserSnapshots.Snapshot snapshot(String openUrl, String... history) throws Exception {
+        JSONObject features = new JSONObject();
+        features.put("location", false);
+        return new BrowserSnapshots.Snapshot(openUrl, true, features, new PageState(Arrays.asList(history), 0, 250));
+    }
+
+    private static void awaitFile(File file) throws InterruptedException {
+        for (int i = 0; i < 500 && !file.isFile(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(file.toString(), file.isFile());
+    }
+
+    @Test
+    public void namesFilesByDigest() {
+        BrowserSnapshots snapshots = new BrowserSnapshots(dir);
+        // Same String.hashCode()
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        String name = snapshots.fileFor("Aa").getName();
+        assertTrue(name, name.matches("[0-9a-f]{64}\\.snapshot"));
+        assertNotEquals(name, snapshots.fileFor("BB").getName());
+        assertEquals(name, snapshots.fileFor("Aa").getName());
+    }
+
+    @Test
+    public void readsBackSavedSnapshots() throws Exception {
+        BrowserSnapshots snapshots = new BrowserSnapshots(dir);
+        snapshots.save(snapshot("Aa", "https://a.example/", "https://a.example/2"));
+        snapshots.save(snapshot("BB", "https://b.example/"));
+        awaitFile(snapshots.fileFor("Aa"));
+        awaitFile(snapshots.fileFor("BB"));
+        snapshots.shutdown();
+
+        // A new start, from the disk
+        BrowserSnapshots reread = new BrowserSnapshots(dir);
+        BrowserSnapshots.Snapshot a = reread.get("Aa");
+        assertNotNull(a);
+        assertEquals(Arrays.asList("https://a.example/", "https://a.example/2"), a.page.history);
+        assertEquals(250, a.page.scrollY);
+        assertTrue(a.hidden);
+        assertEquals("https://b.example/", reread.get("BB").page.getUrl());
+        assertNull(reread.get("https://c.example/"));
+
+        HashMap<String, Boolean> open = new HashMap<String, Boolean>();
+        open.put("location", true);
+        HashMap<String, Boolean> merged = a.mergeFeatures(open, "hidden");
+        assertEquals(Boolean.TRUE, merged.get("location"));
+        assertEquals(Boolean.TRUE, merged.get("hidden"));
+        reread.shutdown();
+    }
+
+    @Test
+    public void dropsUnreadableFiles() throws Exception {
+        BrowserSnapshots snapshots = new BrowserSnapshots(dir);
+        File file = snapshots.fileFor("https://a.example/");
+        dir.mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        // The first version, with its Parcel in it
+        out.write(new byte[] { 0, 0, 0, 1, 0, 3, 'a', 'b', 'c' });
+        out.close();
+        assertNull(snapshots.get("https://a.example/"));
+
+        snapshots.preload();
+        for (int i = 0; i < 500 && file.exists(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(file.exists());
+        snapshots.shutdown();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.os.Bundle;
+import android.webkit.WebBackForwardList;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class BrowserTabsTest {
+
+    private final ArrayList<String> calls = new ArrayList<String>();
+
+    /**
+     * A tab WebView that only records what is done to it
+     */
+    private WebViewEngine view(final int index) {
+        return new WebViewEngine(null) {
+            @Override
+            public void loadUrl(String url) {
+                calls.add(index + " load " + url);
+            }
+
+            @Override
+            public void stopLoading() {
+            }
+
+            @Override
+            public void onPause() {
+                calls.add(index + " pause");
+            }
+
+            @Override
+            public void onResume() {
+                calls.add(index + " resume");
+            }
+
+            @Override
+            public void destroy() {
+                calls.add(index + " destroy");
+            }
+
+            @Override
+            public void setVisible(boolean visible) {
+                calls.add(index + (visible ? " show" : " hide"));
+            }
+
+            @Override
+            public boolean saveState(Bundle state) {
+                calls.add(index + " save");
+                return true;
+            }
+
+            @Override
+            public WebBackForwardList restoreState(Bundle state) {
+                calls.add(index + " restore");
+                return null;
+            }
+        };
+    }
+
+    private BrowserTabs tabs(String config, int limit) throws Exception {
+        return new BrowserTabs(new BrowserTabs.Host() {
+            @Override
+            public WebViewEngine createView(int index) {
+                calls.add(index + " create");
+                return view(index);
+            }
+
+            @Override
+            public void releaseView(int index, WebViewEngine view) {
+                calls.add(index + " release");
+            }
+        }, BrowserTabs.parse(new JSONArray(config)), limit);
+    }
+
+    @Test
+    public void buildsATabsWebViewWhenItIsFirstSelected() throws Exception {
+        BrowserTabs tabs = tabs("[{title: 'A', url: 'http://a/'}, {title: 'B', url: 'http://b/'}, 'C']", 3);
+        assertEquals(3, tabs.size());
+        assertEquals(-1, tabs.getSelected());
+        assertEquals(new ArrayList<String>(), calls);
+
+        WebViewEngine a = tabs.select(0, "http://a/start");
+        assertEquals(Arrays.asList("0 create", "0 load http://a/start"), calls);
+        calls.clear();
+
+        tabs.select(1, null);
+        assertEquals(Arrays.asList("0 hide", "0 pause", "1 create", "1 load http://b/"), calls);
+        calls.clear();
+
+        // Switching back doesn't load anything
+        assertSame(a, tabs.select(0, null));
+        assertEquals(Arrays.asList("1 hide", "1 pause", "0 resume", "0 show"), calls);
+        calls.clear();
+
+        // A tab without a url has nothing to show
+        assertNull(tabs.select(2, null));
+        assertEquals(0, tabs.getSelected());
+        assertEquals(new ArrayList<String>(), calls);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlySelectedWebView() throws Exception {
+        BrowserTabs tabs = tabs("[{title: 'A', url: 'http://a/'}, {title: 'B', url: 'http://b/'}, {title: 'C', url: 'http://c/'}]", 2);
+        tabs.select(0, null);
+        tabs.select(1, null);
+        tabs.select(0, null);
+        calls.clear();
+
+        tabs.select(2, null);
+        assertEquals(Arrays.asList("0 hide", "0 pause", "2 create", "2 load http://c/",
+                "1 save", "1 release", "1 destroy"), calls);
+        calls.clear();
+
+        // Built again from its saved state, which the WebView here can't restore
+        tabs.select(1, null);
+        assertEquals(Arrays.asList("2 hide", "2 pause", "1 create", "1 restore", "1 load http://b/",
+                "0 save", "0 release", "0 destroy"), calls);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Without batching, which needs a Handler on a Looper
+ */
+public class EventChannelTest {
+
+    private static class Recording extends CallbackContext {
+        final ArrayList<PluginResult> results = new ArrayList<PluginResult>();
+
+        Recording() {
+            super("InAppBrowserBeta1", null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            results.add(pluginResult);
+        }
+    }
+
+    private final EventChannel channel = new EventChannel(null);
+    private final Recording callback = new Recording();
+
+    @Test
+    public void sendsOnlySubscribedTypes() throws Exception {
+        assertFalse(channel.wants("loadstop"));
+        channel.open(callback);
+        assertFalse(channel.wants("loadstop"));
+        assertTrue(channel.wants("someOtherEvent"));
+
+        channel.setSubscribed("loadstop", true);
+        assertTrue(channel.wants("loadstop"));
+        channel.send(event("loadstart"), true, PluginResult.Status.OK);
+        channel.send(event("loadstop"), true, PluginResult.Status.OK);
+        assertEquals(1, callback.results.size());
+        assertEquals("loadstop", new JSONObject(callback.results.get(0).getMessage()).getString("type"));
+        assertTrue(callback.results.get(0).getKeepCallback());
+
+        channel.setSubscribed("loadstop", false);
+        channel.send(event("loadstop"), true, PluginResult.Status.OK);
+        assertEquals(1, callback.results.size());
+    }
+
+    @Test
+    public void lastEventClosesTheChannel() throws Exception {
+        channel.open(callback);
+        // Always delivered, listeners or not
+        channel.send(event("exit"), false, PluginResult.Status.OK);
+        assertEquals(1, callback.results.size());
+        assertFalse(callback.results.get(0).getKeepCallback());
+        assertFalse(channel.isOpen());
+
+        channel.send(event("exit"), false, PluginResult.Status.OK);
+        channel.sendPluginResult(new PluginResult(PluginResult.Status.OK));
+        assertEquals(1, callback.results.size());
+    }
+
+    @Test
+    public void reopeningForgetsSubscriptions() throws Exception {
+        channel.open(callback);
+        channel.setSubscribed("loaderror", true);
+        Recording next = new Recording();
+        channel.open(next);
+        assertFalse(channel.wants("loaderror"));
+        channel.sendPluginResult(new PluginResult(PluginResult.Status.OK, "done"));
+        assertEquals(0, callback.results.size());
+        assertEquals(1, next.results.size());
+    }
+
+    private static JSONObject event(String type) throws Exception {
+        JSONObject obj = new JSONObject();
+        obj.put("type", type);
+        return obj;
+    }
+}
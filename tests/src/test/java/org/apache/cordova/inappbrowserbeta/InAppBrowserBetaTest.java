@@ -0,0 +1,375 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaArgs;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Whole browsers driven through execute(), on headless engines
+ */
+public class InAppBrowserBetaTest {
+
+    private static final String HOME = "http://local.test/";
+    private static final String OTHER = "http://local.test/other";
+
+    private static class Recording extends CallbackContext {
+        final ArrayList<JSONObject> events = new ArrayList<JSONObject>();
+        final ArrayList<PluginResult> results = new ArrayList<PluginResult>();
+
+        Recording() {
+            super("InAppBrowserBeta1", null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            results.add(pluginResult);
+            try {
+                if (pluginResult.getMessageType() == PluginResult.MESSAGE_TYPE_JSON) {
+                    events.add(new JSONObject(pluginResult.getMessage()));
+                }
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        ArrayList<String> types() {
+            ArrayList<String> types = new ArrayList<String>();
+            for (JSONObject event : events) {
+                types.add(event.optString("type"));
+            }
+            return types;
+        }
+
+        /**
+         * @return "ok: message" or "error: message" for each result
+         */
+        ArrayList<String> outcomes() {
+            ArrayList<String> outcomes = new ArrayList<String>();
+            for (PluginResult result : results) {
+                String status = result.getStatus() == PluginResult.Status.OK.ordinal() ? "ok" : "error";
+                outcomes.add(status + ": " + result.getStrMessage());
+            }
+            return outcomes;
+        }
+    }
+
+    private final EngineThread thread = new EngineThread();
+    private final ArrayList<HeadlessEngine> engines = new ArrayList<HeadlessEngine>();
+    private final Recording callback = new Recording();
+    private InAppBrowserBeta plugin;
+
+    @Before
+    public void setUp() {
+        final LocalSite site = new LocalSite().page(HOME, "http://local.test/app.js").page(OTHER);
+        plugin = new InAppBrowserBeta();
+        plugin.setHeadlessEngines(new BrowserEngine.Factory() {
+            @Override
+            public BrowserEngine create() {
+                HeadlessEngine engine = new HeadlessEngine(site, thread);
+                engines.add(engine);
+                return engine;
+            }
+        }, thread, thread);
+    }
+
+    private void execute(String action, Object... args) throws Exception {
+        execute(callback, action, args);
+    }
+
+    private void execute(CallbackContext callbackContext, String action, Object... args) throws Exception {
+        JSONArray json = new JSONArray();
+        for (Object arg : args) {
+            json.put(arg == null ? JSONObject.NULL : arg);
+        }
+        plugin.execute(action, new CordovaArgs(json), callbackContext);
+    }
+
+    private void open(String url, String id) throws Exception {
+        open(callback, url, id, "");
+    }
+
+    private void open(Recording events, String url, String id, String features) throws Exception {
+        execute(events, "open", url, "_blank", features, id, null);
+        for (String type : new String[] { "loadstart", "loadstop", "loaderror", "customscheme" }) {
+            execute("subscribe", type, id);
+        }
+        thread.drain();
+    }
+
+    @Test
+    public void loadsPages() throws Exception {
+        open(HOME, "page");
+        assertEquals(1, engines.size());
+        assertEquals(HOME, engines.get(0).getUrl());
+        assertEquals("loadstart", callback.types().get(0));
+        assertEquals("loadstop", callback.types().get(1));
+    }
+
+    @Test
+    public void sendsActionsToTheBrowserTheyName() throws Exception {
+        Recording first = new Recording();
+        Recording second = new Recording();
+        open(first, HOME, "first", "");
+        open(second, OTHER, "second", "");
+        assertEquals(Arrays.asList("first", "second"), new ArrayList<String>(plugin.getBrowserIds()));
+        HeadlessEngine firstEngine = engines.get(0);
+        HeadlessEngine secondEngine = engines.get(1);
+        int firstScripts = firstEngine.getScriptCount();
+        int secondScripts = secondEngine.getScriptCount();
+
+        execute("injectScriptCode", "window.done = true", false, "first");
+        thread.drain();
+        assertEquals(firstScripts + 1, firstEngine.getScriptCount());
+        assertEquals(secondScripts, secondEngine.getScriptCount());
+
+        execute("close", "second");
+        thread.drain();
+        assertTrue(secondEngine.isDestroyed());
+        assertFalse(firstEngine.isDestroyed());
+        assertEquals(Arrays.asList("first"), new ArrayList<String>(plugin.getBrowserIds()));
+        assertEquals("exit", second.types().get(second.types().size() - 1));
+        assertFalse(first.types().contains("exit"));
+
+        // Without an id, the most recently opened browser left
+        execute("injectScriptCode", "window.done = true", false, null);
+        thread.drain();
+        assertEquals(firstScripts + 2, firstEngine.getScriptCount());
+    }
+
+    @Test
+    public void routesAnOpenedTelUrlWithoutShowingABrowser() throws Exception {
+        open("tel:5551212", "dial");
+        assertEquals(0, engines.size());
+        assertTrue(plugin.getBrowserIds().isEmpty());
+        assertEquals(new ArrayList<String>(), callback.types());
+    }
+
+    @Test
+    public void keepsTheParkedBrowserForAnOpenThatIsRouted() throws Exception {
+        open(callback, HOME, "first", "recycle=yes");
+        execute("close", "first");
+        thread.drain();
+        open(new Recording(), "tel:5551212", "dial", "recycle=yes");
+        HeadlessEngine engine = engines.get(0);
+        assertFalse(engine.isDestroyed());
+        assertEquals("about:blank", engine.getUrl());
+
+        open(new Recording(), OTHER, "second", "recycle=yes");
+        assertEquals(1, engines.size());
+        assertEquals(OTHER, engine.getUrl());
+    }
+
+    @Test
+    public void deliversAnOpenedRegisteredScheme() throws Exception {
+        execute("registerScheme", "myapp", false);
+        // Before the JavaScript side gets to subscribe
+        execute("open", "myapp://done", "_blank", "", "custom", null);
+        thread.drain();
+        assertEquals(0, engines.size());
+        assertEquals(1, callback.events.size());
+        JSONObject event = callback.events.get(0);
+        assertEquals("customscheme", event.getString("type"));
+        assertEquals("myapp://done", event.getString("url"));
+    }
+
+    @Test
+    public void closesABrowserClosedBeforeItWasShown() throws Exception {
+        execute("open", HOME, "_blank", "", "quick", null);
+        execute("close", "quick");
+        thread.drain();
+        assertTrue(plugin.getBrowserIds().isEmpty());
+        assertEquals(1, engines.size());
+        assertTrue(engines.get(0).isDestroyed());
+        assertEquals("exit", callback.types().get(callback.types().size() - 1));
+    }
+
+    @Test
+    public void parksARecycledBrowserForTheNextOpen() throws Exception {
+        open(callback, HOME, "first", "recycle=yes");
+        execute("close", "first");
+        thread.drain();
+        HeadlessEngine engine = engines.get(0);
+        assertFalse(engine.isDestroyed());
+        assertEquals("about:blank", engine.getUrl());
+        assertFalse(engine.canGoBack());
+        assertTrue(plugin.getBrowserIds().isEmpty());
+        assertEquals("exit", callback.types().get(callback.types().size() - 1));
+
+        Recording second = new Recording();
+        open(second, OTHER, "second", "recycle=yes");
+        assertEquals(1, engines.size());
+        assertEquals(OTHER, engine.getUrl());
+        assertEquals(Arrays.asList("loadstart", "loadstop"), second.types());
+    }
+
+    @Test
+    public void tearsDownAParkedBrowserThatIsntWanted() throws Exception {
+        open(callback, HOME, "first", "recycle=yes");
+        execute("close", "first");
+        thread.drain();
+        open(new Recording(), HOME, "second", "");
+        assertEquals(2, engines.size());
+        assertTrue(engines.get(0).isDestroyed());
+        assertEquals(HOME, engines.get(1).getUrl());
+    }
+
+    @Test
+    public void throttlesAHiddenBrowserUntilItIsShown() throws Exception {
+        open(HOME, "page");
+        HeadlessEngine engine = engines.get(0);
+        assertFalse(engine.isPaused());
+
+        execute("hide", "page");
+        thread.drain();
+        assertTrue(engine.isPaused());
+        assertTrue(engine.getLastScript().endsWith("(window, document, true);"));
+        int scripts = engine.getScriptCount();
+        // Already in the background
+        execute("hide", "page");
+        thread.drain();
+        assertEquals(scripts, engine.getScriptCount());
+
+        execute("show", "page");
+        thread.drain();
+        assertFalse(engine.isPaused());
+        assertTrue(engine.getLastScript().endsWith("(window, document, false);"));
+    }
+
+    @Test
+    public void opensAHiddenBrowserInTheBackground() throws Exception {
+        open(callback, HOME, "page", "hidden=yes");
+        assertTrue(engines.get(0).isPaused());
+        // Again once the page has loaded, a new page starts out visible
+        assertTrue(engines.get(0).getLastScript().endsWith("(window, document, true);"));
+        assertEquals(Arrays.asList("loadstart", "loadstop"), callback.types());
+    }
+
+    @Test
+    public void recoversFromALostRenderer() throws Exception {
+        open(HOME, "page");
+        execute("subscribe", "rendererrecovered", "page");
+        HeadlessEngine dead = engines.get(0);
+        dead.click(OTHER);
+        Recording wait = new Recording();
+        execute(wait, "waitForCondition", "window.ready", null, "ready", "page");
+        thread.drain();
+
+        dead.killRenderer(false);
+        thread.drain();
+        assertTrue(dead.isDestroyed());
+        assertEquals(2, engines.size());
+        HeadlessEngine engine = engines.get(1);
+        assertEquals(OTHER, engine.getUrl());
+        JSONObject event = callback.events.get(callback.events.size() - 1);
+        assertEquals("rendererrecovered", event.getString("type"));
+        assertEquals(OTHER, event.getString("url"));
+        assertFalse(event.getBoolean("crashed"));
+        assertTrue(event.getLong("recoveryTime") >= 0);
+
+        // The wait carries on in the new page
+        assertTrue(wait.results.isEmpty());
+        loadedStatus(engine).resolve("ready", "yes");
+        assertEquals(Arrays.asList("ok: yes"), wait.outcomes());
+    }
+
+    private InAppBrowserBeta.LoadedStatusInterface loadedStatus(HeadlessEngine engine) {
+        return (InAppBrowserBeta.LoadedStatusInterface) engine.getJavascriptInterface("LOADEDSTATUS");
+    }
+
+    @Test
+    public void failsAWaitOnItsTimeout() throws Exception {
+        open(HOME, "page");
+        HeadlessEngine engine = engines.get(0);
+        int scripts = engine.getScriptCount();
+        Recording wait = new Recording();
+        execute(wait, "waitForSelector", "#ready", null, 500, "ready", "page");
+        thread.advance(499);
+        assertEquals(scripts + 1, engine.getScriptCount());
+        assertTrue(wait.results.isEmpty());
+
+        thread.advance(1);
+        assertEquals(Arrays.asList("error: timeout"), wait.outcomes());
+        // The observer is cancelled in the page
+        assertEquals(scripts + 2, engine.getScriptCount());
+        // Too late
+        loadedStatus(engine).resolve("ready", "1");
+        assertEquals(1, wait.results.size());
+    }
+
+    @Test
+    public void resolvesAWaitOnceBeforeItsTimeout() throws Exception {
+        open(HOME, "page");
+        Recording wait = new Recording();
+        execute(wait, "waitForCondition", "window.ready", 500, "ready", "page");
+        thread.drain();
+        loadedStatus(engines.get(0)).resolve("ready", "yes");
+        loadedStatus(engines.get(0)).resolve("ready", "again");
+        thread.advance(1000);
+        assertEquals(Arrays.asList("ok: yes"), wait.outcomes());
+    }
+
+    @Test
+    public void cancelsAWait() throws Exception {
+        open(HOME, "page");
+        Recording wait = new Recording();
+        execute(wait, "waitForCondition", "window.ready", null, "ready", "page");
+        execute("cancelWait", "ready", "page");
+        thread.advance(60000);
+        assertEquals(Arrays.asList("error: cancelled"), wait.outcomes());
+    }
+
+    @Test
+    public void sendsLoadedStatusAsAnEvent() throws Exception {
+        open(HOME, "page");
+        execute("subscribe", "loadedStatus", "page");
+        execute("loadedStatus", "page");
+        thread.drain();
+        int events = callback.events.size();
+        loadedStatus(engines.get(0)).resolve("loadedStatus", "token");
+        assertEquals(events + 1, callback.events.size());
+        JSONObject event = callback.events.get(events);
+        assertEquals("loadedStatus", event.getString("type"));
+        assertEquals("token", event.getString("loaded"));
+    }
+
+    @Test
+    public void dropsLoadedStatusOnItsTimeout() throws Exception {
+        open(HOME, "page");
+        execute("subscribe", "loadedStatus", "page");
+        execute("loadedStatus", "page");
+        thread.advance(30000);
+        int events = callback.events.size();
+        loadedStatus(engines.get(0)).resolve("loadedStatus", "token");
+        assertEquals(events, callback.events.size());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class InjectionTemplateTest {
+
+    @Test
+    public void quotesPlainText() {
+        assertEquals("\"\"", InjectionTemplate.quote(""));
+        assertEquals("\"https://example.com/a/b?c=d\"", InjectionTemplate.quote("https://example.com/a/b?c=d"));
+    }
+
+    @Test
+    public void escapesQuotesBackslashesAndControlCharacters() {
+        assertEquals("\"say \\\"hi\\\"\"", InjectionTemplate.quote("say \"hi\""));
+        assertEquals("\"C:\\\\dir\\\\\"", InjectionTemplate.quote("C:\\dir\\"));
+        assertEquals("\"a\\nb\\rc\\td\\be\\ff\"", InjectionTemplate.quote("a\nb\rc\td\be\ff"));
+        assertEquals("\"\\u0000\\u001f\"", InjectionTemplate.quote("\u0000\u001f"));
+        assertEquals("\"'single'\"", InjectionTemplate.quote("'single'"));
+    }
+
+    @Test
+    public void escapesJavaScriptLineTerminators() {
+        assertEquals("\"a\\u2028b\\u2029c\"", InjectionTemplate.quote("a\u2028b\u2029c"));
+    }
+
+    @Test
+    public void escapesTheSlashOfClosingTags() {
+        assertEquals("\"<\\/script><b>x<\\/b>\"", InjectionTemplate.quote("</script><b>x</b>"));
+        assertEquals("\"a / b // c\"", InjectionTemplate.quote("a / b // c"));
+        assertEquals("\"/<\"", InjectionTemplate.quote("/<"));
+    }
+
+    @Test
+    public void leavesSurrogatesAlone() {
+        // A pair is a valid character, and so is a lone surrogate in a JavaScript string
+        assertEquals("\"\ud83d\ude00\"", InjectionTemplate.quote("\ud83d\ude00"));
+        assertEquals("\"\ud83d\"", InjectionTemplate.quote("\ud83d"));
+        assertEquals("\"\ude00x\"", InjectionTemplate.quote("\ude00x"));
+    }
+
+    @Test
+    public void quotedStringsParseBackToTheSource() throws Exception {
+        String[] sources = {
+                "",
+                "plain",
+                "mixed \"quotes\" and 'quotes'\\n\n",
+                "</script><script>alert(1)</script>",
+                "\u2028\u2029\u0007\ud83d\ude00",
+                longSource(4096, "x\"\\\n</"),
+        };
+        for (String source : sources) {
+            String quoted = InjectionTemplate.quote(source);
+            assertEquals(source, new JSONArray("[" + quoted + "]").getString(0));
+        }
+    }
+
+    @Test
+    public void rendersTheSourceAndCallbackId() {
+        assertEquals("prompt(JSON.stringify([eval(\"1 + \\\"%s\\\"\")]), 'gap-iab://cb1')",
+                InjectionTemplate.SCRIPT_CODE_WITH_CALLBACK.render("1 + \"%s\"", "cb1"));
+        assertEquals("[eval(\"x\")]", InjectionTemplate.SCRIPT_CODE_RESULT.render("x", null));
+        assertEquals("a%b%%x\"s\"%", new InjectionTemplate("a%b%%x%s%").render("s", null));
+        assertEquals("\"s\" cb \"s\"", new InjectionTemplate("%s %c %s").render("s", "cb"));
+    }
+
+    private static String longSource(int length, String seed) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        String s = seed + new String(chars);
+        return s.substring(0, length);
+    }
+}
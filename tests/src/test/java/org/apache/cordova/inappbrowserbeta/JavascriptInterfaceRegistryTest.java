@@ -0,0 +1,79 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JavascriptInterfaceRegistryTest {
+
+    private final JavascriptInterfaceRegistry registry = new JavascriptInterfaceRegistry();
+    private final EngineThread thread = new EngineThread();
+    private final Object status = new Object();
+    private final Object notify = new Object();
+
+    private HeadlessEngine engine() {
+        return new HeadlessEngine(new LocalSite(), thread);
+    }
+
+    @Test
+    public void bindsEachInterfaceOncePerEngine() {
+        registry.register("status", status);
+        registry.register("notify", notify);
+        HeadlessEngine first = engine();
+        HeadlessEngine second = engine();
+
+        assertTrue(registry.bind(first, "status"));
+        assertFalse(registry.bind(first, "status"));
+        assertFalse(registry.bind(first, "unknown"));
+        registry.bindAll(first);
+        registry.bindAll(second);
+        assertSame(status, first.getJavascriptInterface("status"));
+        assertSame(notify, first.getJavascriptInterface("notify"));
+        assertSame(status, second.getJavascriptInterface("status"));
+        assertEquals(new HashSet<String>(Arrays.asList("status", "notify")), registry.getBound(first));
+    }
+
+    @Test
+    public void unbindsFromOneEngine() {
+        registry.register("status", status);
+        HeadlessEngine first = engine();
+        HeadlessEngine second = engine();
+        registry.bindAll(first);
+        registry.bindAll(second);
+
+        registry.unbindAll(first);
+        assertNull(first.getJavascriptInterface("status"));
+        assertFalse(registry.isBound(first, "status"));
+        assertTrue(registry.getBound(first).isEmpty());
+        assertTrue(registry.isBound(second, "status"));
+
+        // Bound again, as for a recycled engine
+        assertTrue(registry.bind(first, "status"));
+        assertSame(status, first.getJavascriptInterface("status"));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LeakWatcherTest {
+
+    @Test
+    public void reportsWhatIsStillReachable() throws Exception {
+        final BlockingQueue<JSONArray> reports = new ArrayBlockingQueue<JSONArray>(4);
+        LeakWatcher watcher = new LeakWatcher(new LeakWatcher.Listener() {
+            @Override
+            public void onLeaks(JSONArray leaks) {
+                reports.add(leaks);
+            }
+        });
+        Object held = new Object();
+        watcher.watch(held, "dialog", "b1");
+        watcher.watch(new Object(), "webview", "b2");
+        try {
+            JSONArray leaks = reports.poll(LeakWatcher.CHECK_DELAY + 10000, TimeUnit.MILLISECONDS);
+            assertNotNull(leaks);
+            assertEquals(1, leaks.length());
+            JSONObject leak = leaks.getJSONObject(0);
+            assertEquals("dialog", leak.getString("kind"));
+            assertEquals("b1", leak.getString("browser"));
+            assertTrue(leak.getLong("age") >= LeakWatcher.CHECK_DELAY);
+            assertNotNull(held);
+        } finally {
+            watcher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryPressureTest {
+
+    @Test
+    public void mapsTrimLevelsToStages() {
+        assertEquals(MemoryPressure.RELEASE_HIDDEN, MemoryPressure.stageFor(MemoryPressure.TRIM_MEMORY_COMPLETE));
+        assertEquals(MemoryPressure.RELEASE_POOL, MemoryPressure.stageFor(MemoryPressure.TRIM_MEMORY_MODERATE));
+        assertEquals(MemoryPressure.DROP_HISTORY, MemoryPressure.stageFor(MemoryPressure.TRIM_MEMORY_BACKGROUND));
+        // Only gone to the background
+        assertEquals(0, MemoryPressure.stageFor(MemoryPressure.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(MemoryPressure.RELEASE_HIDDEN, MemoryPressure.stageFor(MemoryPressure.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(MemoryPressure.RELEASE_POOL, MemoryPressure.stageFor(MemoryPressure.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(0, MemoryPressure.stageFor(MemoryPressure.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(0, MemoryPressure.stageFor(0));
+    }
+
+    @Test
+    public void reportsOnlyStages() {
+        final int[] stages = new int[2];
+        MemoryPressure pressure = new MemoryPressure(new MemoryPressure.Listener() {
+            @Override
+            public void onMemoryPressure(int stage) {
+                stages[0]++;
+                stages[1] = stage;
+            }
+        });
+        pressure.onTrimMemory(0);
+        pressure.onTrimMemory(MemoryPressure.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(0, stages[0]);
+        pressure.onTrimMemory(MemoryPressure.TRIM_MEMORY_BACKGROUND);
+        assertEquals(1, stages[0]);
+        assertEquals(MemoryPressure.DROP_HISTORY, stages[1]);
+        pressure.onLowMemory();
+        assertEquals(MemoryPressure.RELEASE_HIDDEN, stages[1]);
+    }
+}
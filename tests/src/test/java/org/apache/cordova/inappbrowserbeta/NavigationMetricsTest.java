@@ -0,0 +1,97 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NavigationMetricsTest {
+
+    @Test
+    public void bucketsAreAtMostAQuarterWide() {
+        for (long value = 0; value < 1 << 20; value += 1 + value / 64) {
+            int bucket = NavigationMetrics.Histogram.bucketOf(value);
+            long upper = NavigationMetrics.Histogram.upperBoundOf(bucket);
+            assertTrue(value + " <= " + upper, value <= upper);
+            assertTrue(value + " in " + upper, upper <= value + value / 4 + 1);
+            if (bucket > 0) {
+                assertTrue(NavigationMetrics.Histogram.upperBoundOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void reportsPercentiles() throws Exception {
+        NavigationMetrics.Histogram histogram = new NavigationMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        assertEquals(101, histogram.getCount());
+        assertNear(50, histogram.getPercentile(0.5));
+        assertNear(95, histogram.getPercentile(0.95));
+        assertEquals(100, histogram.getPercentile(1));
+
+        JSONObject json = histogram.toJSON();
+        assertEquals(101, json.getLong("count"));
+        assertEquals(5050 / 101, json.getLong("mean"));
+        assertEquals(100, json.getLong("max"));
+    }
+
+    @Test
+    public void groupsByHost() throws Exception {
+        NavigationMetrics metrics = new NavigationMetrics();
+        metrics.record(NavigationMetrics.PAGE_LOAD, "https://a.example/one", 10);
+        metrics.record(NavigationMetrics.PAGE_LOAD, "https://a.example/two?x=1", 30);
+        metrics.record(NavigationMetrics.OPEN_TO_SHOW, "https://b.example/", 5);
+        metrics.record(NavigationMetrics.PAGE_ERROR, null, 1);
+        metrics.record("unknown", "https://c.example/", 1);
+
+        JSONObject json = metrics.toJSON();
+        assertEquals(3, json.length());
+        JSONObject a = json.getJSONObject("a.example");
+        assertEquals(2, a.getJSONObject(NavigationMetrics.PAGE_LOAD).getLong("count"));
+        assertFalse(a.has(NavigationMetrics.OPEN_TO_SHOW));
+        assertEquals(1, json.getJSONObject("b.example").getJSONObject(NavigationMetrics.OPEN_TO_SHOW).getLong("count"));
+        assertTrue(json.getJSONObject("(none)").has(NavigationMetrics.PAGE_ERROR));
+
+        metrics.reset();
+        assertEquals(0, metrics.toJSON().length());
+    }
+
+    @Test
+    public void lumpsTogetherHostsPastTheLimit() throws Exception {
+        NavigationMetrics metrics = new NavigationMetrics();
+        for (int i = 0; i < 100; i++) {
+            metrics.record(NavigationMetrics.PAGE_LOAD, "https://host" + i + ".example/", i);
+        }
+        JSONObject json = metrics.toJSON();
+        assertEquals(65, json.length());
+        assertEquals(36, json.getJSONObject("(other)").getJSONObject(NavigationMetrics.PAGE_LOAD).getLong("count"));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(expected + " ~ " + actual, actual >= expected && actual <= expected + expected / 4);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PagePrefetcherTest {
+
+    @Test
+    public void findsScriptsThenStylesheets() throws Exception {
+        String html = "<html><head>"
+                + "<link rel=\"stylesheet\" href=\"/css/app.css\">"
+                + "<link rel='icon' href='/favicon.ico'>"
+                + "<LINK HREF=\"print.css#x\" REL=\"stylesheet\" media=\"print\">"
+                + "<script src=\"https://cdn.example/lib.js?a=1&amp;b=2\"></script>"
+                + "<script src=\"data:text/javascript,1\"></script>"
+                + "<script src='/css/app.css'></script>"
+                + "</head></html>";
+        List<String> found = PagePrefetcher.findSubresources(html, new URL("https://a.example/dir/page.html"));
+        assertEquals(Arrays.asList("https://cdn.example/lib.js?a=1&b=2", "https://a.example/css/app.css",
+                "https://a.example/dir/print.css"), found);
+    }
+
+    @Test
+    public void findsAtMostTheLimit() throws Exception {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            html.append("<script src=\"/s").append(i).append(".js\"></script>");
+        }
+        List<String> found = PagePrefetcher.findSubresources(html.toString(), new URL("https://a.example/"));
+        assertEquals(PagePrefetcher.MAX_SUBRESOURCES, found.size());
+        assertEquals("https://a.example/s0.js", found.get(0));
+        assertEquals(Collections.<String>emptyList(), PagePrefetcher.findSubresources("no tags", new URL("https://a.example/")));
+    }
+
+    private static Map<String, List<String>> headers(String... namesAndValues) {
+        HashMap<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], Collections.singletonList(namesAndValues[i + 1]));
+        }
+        return headers;
+    }
+
+    @Test
+    public void sharesOnlyResponsesAnyBrowserMayGet() {
+        assertTrue(PagePrefetcher.isShareable(headers("Content-Type", "text/html"), false));
+        assertTrue(PagePrefetcher.isShareable(headers("cache-control", "max-age=60", "Vary", "Accept-Encoding"), false));
+        assertFalse(PagePrefetcher.isShareable(headers("Cache-Control", "max-age=60, Private"), false));
+        assertFalse(PagePrefetcher.isShareable(headers("Cache-Control", "no-cache"), false));
+        assertFalse(PagePrefetcher.isShareable(headers("Cache-Control", "no-store"), false));
+        assertFalse(PagePrefetcher.isShareable(headers("Cache-Control", "max-age = 0"), false));
+        assertFalse(PagePrefetcher.isShareable(headers("Pragma", "no-cache"), false));
+        assertFalse(PagePrefetcher.isShareable(headers("Vary", "Accept-Encoding, Cookie"), false));
+        assertFalse(PagePrefetcher.isShareable(headers("Set-Cookie", "session=1"), false));
+    }
+
+    @Test
+    public void sharesResponsesToCookiesOnlyWhenPublic() {
+        assertFalse(PagePrefetcher.isShareable(headers("Cache-Control", "max-age=60"), true));
+        assertTrue(PagePrefetcher.isShareable(headers("Cache-Control", "public, max-age=60"), true));
+        assertFalse(PagePrefetcher.isShareable(headers("Cache-Control", "public", "Set-Cookie", "a=b"), true));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PageStateTest {
+
+    @Test
+    public void keepsTheHistoryUpToTheCurrentPage() {
+        PageState page = new PageState(Arrays.asList("https://a.example/1", "https://a.example/2", "https://a.example/3"), 0, 120);
+        assertEquals("https://a.example/3", page.getUrl());
+        assertEquals(Arrays.asList("https://a.example/1", "https://a.example/2"), page.getBack());
+        assertEquals(120, page.scrollY);
+    }
+
+    @Test
+    public void dropsTheOldestPastTheLimit() {
+        ArrayList<String> history = new ArrayList<String>();
+        for (int i = 0; i < PageState.MAX_HISTORY + 5; i++) {
+            history.add("https://a.example/" + i);
+        }
+        PageState page = new PageState(history, 0, 0);
+        assertEquals(PageState.MAX_HISTORY, page.history.size());
+        assertEquals("https://a.example/5", page.history.get(0));
+        assertEquals("https://a.example/" + (PageState.MAX_HISTORY + 4), page.getUrl());
+    }
+
+    @Test
+    public void needsACurrentPage() {
+        try {
+            new PageState(Collections.<String>emptyList(), 0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void readsBackWhatItWrote() throws Exception {
+        char[] big = new char[70000];
+        Arrays.fill(big, 'x');
+        PageState page = new PageState(Arrays.asList("https://a.example/été", "data:text/plain," + new String(big)), 7, 900);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        page.write(new DataOutputStream(bytes));
+
+        PageState read = PageState.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(page.history, read.history);
+        assertEquals(7, read.scrollX);
+        assertEquals(900, read.scrollY);
+    }
+
+    @Test
+    public void rejectsCorruptStreams() throws Exception {
+        assertUnreadable(new byte[] { 0, 0, 0, 0 });
+        assertUnreadable(new byte[] { 0x7f, 0, 0, 0 });
+        assertUnreadable(new byte[] { 0, 0, 0, 1, 0x7f, 0, 0, 0 });
+        assertUnreadable(new byte[] { 0, 0, 0, 1, 0, 0, 0, 9, 'h' });
+    }
+
+    private static void assertUnreadable(byte[] bytes) {
+        try {
+            PageState.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
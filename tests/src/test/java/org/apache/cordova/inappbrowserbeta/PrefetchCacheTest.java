@@ -0,0 +1,104 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import android.os.SystemClock;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrefetchCacheTest {
+
+    private static PrefetchCache.Entry entry(int bytes, long ttl) {
+        return new PrefetchCache.Entry("text/html", "utf-8", "OK", Collections.<String, String>emptyMap(),
+                new byte[bytes], SystemClock.elapsedRealtime() + ttl, null);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedPastTheCapacity() {
+        PrefetchCache cache = new PrefetchCache(100);
+        assertTrue(cache.put("a", entry(40, 60000)));
+        assertTrue(cache.put("b", entry(40, 60000)));
+        assertNotNull(cache.get("a", null));
+        assertTrue(cache.put("c", entry(40, 60000)));
+        assertNotNull(cache.get("a", null));
+        assertNull(cache.get("b", null));
+        assertNotNull(cache.get("c", null));
+        assertEquals(80, cache.size());
+    }
+
+    @Test
+    public void rejectsBodiesOverTheCapacity() {
+        PrefetchCache cache = new PrefetchCache(100);
+        assertTrue(cache.put("a", entry(100, 60000)));
+        assertFalse(cache.put("b", entry(101, 60000)));
+        assertNotNull(cache.get("a", null));
+        assertEquals(100, cache.size());
+        assertFalse(new PrefetchCache(-1).put("a", entry(1, 60000)));
+    }
+
+    @Test
+    public void replacesAndExpires() {
+        PrefetchCache cache = new PrefetchCache(100);
+        cache.put("a", entry(40, 60000));
+        cache.put("a", entry(10, 60000));
+        assertEquals(10, cache.size());
+        cache.put("b", entry(20, -1));
+        assertNull(cache.get("b", null));
+        assertEquals(10, cache.size());
+        cache.clear();
+        assertNull(cache.get("a", null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void answersOnlyWithTheCookiesOfTheFetch() {
+        PrefetchCache cache = new PrefetchCache(100);
+        cache.put("a", entry(10, 60000));
+        cache.put("b", new PrefetchCache.Entry("text/html", null, "OK", Collections.<String, String>emptyMap(),
+                new byte[10], SystemClock.elapsedRealtime() + 60000, "session=1"));
+        assertNotNull(cache.get("b", "session=1"));
+        // Logged in since
+        assertNull(cache.get("a", "session=2"));
+        // And out
+        assertNull(cache.get("b", null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void findsOtherSpellingsOfTheUrl() {
+        PrefetchCache cache = new PrefetchCache(100);
+        cache.put("https://a.example/#top", entry(10, 60000));
+        assertNotNull(cache.get("HTTPS://A.Example:443", null));
+        assertNotNull(cache.get("https://a.example/#other", null));
+        assertNull(cache.get("https://a.example/?q", null));
+        assertEquals("http://a.example:8080/Path/?q=A", PrefetchCache.key("http://A.example:8080/Path/?q=A#"));
+        assertEquals("https://a.example/dir/", PrefetchCache.key("https://a.example/dir/"));
+        assertEquals("https://a.example/dir", PrefetchCache.key("https://a.example/dir#x"));
+        assertEquals("not a url", PrefetchCache.key("not a url"));
+        assertEquals("about:blank", PrefetchCache.key("about:blank"));
+    }
+}
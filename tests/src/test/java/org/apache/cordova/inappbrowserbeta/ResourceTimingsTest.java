@@ -0,0 +1,115 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceTimingsTest {
+
+    @Test
+    public void guessesTypesFromExtensions() {
+        assertEquals("script", ResourceTimings.typeOf("https://a.example/app.js"));
+        assertEquals("stylesheet", ResourceTimings.typeOf("https://a.example/app.CSS?v=2"));
+        assertEquals("image", ResourceTimings.typeOf("https://a.example/logo.png#top"));
+        assertEquals("font", ResourceTimings.typeOf("https://a.example/f.woff2"));
+        assertEquals("media", ResourceTimings.typeOf("https://a.example/clip.mp4"));
+        assertEquals("other", ResourceTimings.typeOf("https://a.example/api"));
+        assertEquals("other", ResourceTimings.typeOf("https://a.example.com/api?file=x.js"));
+        assertEquals("other", ResourceTimings.typeOf("https://a.example/v1.2/data"));
+    }
+
+    @Test
+    public void mergesTheEntriesIntoTheRequests() throws Exception {
+        ResourceTimings timings = new ResourceTimings();
+        timings.onRequest("https://a.example/app.js");
+        timings.onRequest("https://a.example/app.css");
+        timings.onRequest("https://cdn.example/logo.png");
+        JSONArray entries = new JSONArray()
+                .put(new JSONArray().put("https://a.example/app.js").put(40).put(1000))
+                .put(new JSONArray().put("https://cdn.example/logo.png").put(120).put(0))
+                // From the memory cache, not seen natively
+                .put(new JSONArray().put("https://cdn.example/photo.jpg").put(10).put(5000).put(100000))
+                .put("not an entry");
+
+        JSONObject summary = timings.summarize(entries);
+        assertEquals(4, summary.getInt("requests"));
+        assertEquals(3, summary.getInt("timed"));
+        assertEquals(0, summary.getInt("dropped"));
+        JSONObject types = summary.getJSONObject("types");
+        assertEquals(1000, types.getJSONObject("script").getLong("bytes"));
+        assertEquals(2, types.getJSONObject("image").getLong("count"));
+        assertEquals(5000, types.getJSONObject("image").getLong("bytes"));
+
+        JSONArray hosts = summary.getJSONArray("slowestHosts");
+        assertEquals(2, hosts.length());
+        assertEquals("cdn.example", hosts.getJSONObject(0).getString("host"));
+        assertEquals(130, hosts.getJSONObject(0).getLong("totalTime"));
+        assertEquals(120, hosts.getJSONObject(0).getLong("maxTime"));
+        assertEquals("a.example", hosts.getJSONObject(1).getString("host"));
+        assertEquals(2, hosts.getJSONObject(1).getInt("count"));
+    }
+
+    @Test
+    public void listsTheRequestsInOrderOfStart() throws Exception {
+        ResourceTimings timings = new ResourceTimings();
+        timings.reset();
+        timings.onRequest("https://a.example/app.js");
+        JSONArray entries = new JSONArray()
+                .put(new JSONArray().put("https://a.example/app.js").put(40).put(1000).put(99999))
+                .put(new JSONArray().put("https://cdn.example/late.png").put(10).put(0).put(100000))
+                // Without startTime, from an older WebView
+                .put(new JSONArray().put("https://cdn.example/old.png").put(5).put(0));
+
+        JSONArray timeline = timings.summarize(entries).getJSONArray("timeline");
+        assertEquals(3, timeline.length());
+        JSONArray first = timeline.getJSONArray(0);
+        assertEquals("https://a.example/app.js", first.getString(0));
+        // Seen natively, which wins over the entry's start
+        assertTrue(first.getLong(1) >= 0 && first.getLong(1) < 99999);
+        assertEquals(40, first.getLong(2));
+        assertEquals("[\"https:\\/\\/cdn.example\\/late.png\",100000,10]", timeline.getJSONArray(1).toString());
+        assertEquals(-1, timeline.getJSONArray(2).getLong(1));
+
+        // The entries aren't kept, summing up again starts from the requests
+        JSONObject again = timings.summarize(null);
+        assertEquals(1, again.getInt("requests"));
+        assertEquals(-1, again.getJSONArray("timeline").getJSONArray(0).getLong(2));
+    }
+
+    @Test
+    public void countsRequestsPastTheLimit() throws Exception {
+        ResourceTimings timings = new ResourceTimings();
+        for (int i = 0; i < ResourceTimings.MAX_REQUESTS + 10; i++) {
+            timings.onRequest("https://h" + (i % 8) + ".example/" + i + ".js");
+        }
+        JSONObject summary = timings.summarize(null);
+        assertEquals(ResourceTimings.MAX_REQUESTS, summary.getInt("requests"));
+        assertEquals(10, summary.getInt("dropped"));
+        assertEquals(0, summary.getInt("timed"));
+        assertEquals(ResourceTimings.TOP_HOSTS, summary.getJSONArray("slowestHosts").length());
+
+        timings.reset();
+        assertEquals(0, timings.summarize(null).getInt("requests"));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SchemeRouterTest {
+
+    private final SchemeRouter router = new SchemeRouter();
+
+    @Test
+    public void findsTheScheme() {
+        assertEquals("tel", SchemeRouter.getScheme("tel:5551212"));
+        assertEquals("https", SchemeRouter.getScheme("HTTPS://example.com/"));
+        assertEquals("x-my.app+v1", SchemeRouter.getScheme("x-my.app+v1:open"));
+        assertNull(SchemeRouter.getScheme("example.com/a:b"));
+        assertNull(SchemeRouter.getScheme(":nothing"));
+        assertNull(SchemeRouter.getScheme("no scheme"));
+    }
+
+    @Test
+    public void handsAppSchemesOff() {
+        // Without an activity to start them with, they are dropped
+        assertEquals(SchemeRouter.HANDLED, router.route(null, "tel:5551212"));
+        assertEquals(SchemeRouter.HANDLED, router.route(null, "TEL:5551212"));
+        assertEquals(SchemeRouter.HANDLED, router.route(null, "sms:5551212?body=hi"));
+        assertEquals(SchemeRouter.HANDLED, router.route(null, "geo:0,0?q=here"));
+        assertEquals(SchemeRouter.HANDLED, router.route(null, "mailto:someone@example.com"));
+        assertEquals(SchemeRouter.HANDLED, router.route(null, "market://details?id=org.example"));
+    }
+
+    @Test
+    public void leavesPagesToTheEngine() {
+        assertEquals(SchemeRouter.NOT_ROUTED, router.route(null, "http://example.com/"));
+        assertEquals(SchemeRouter.NOT_ROUTED, router.route(null, "https://example.com/tel:5551212"));
+        assertEquals(SchemeRouter.NOT_ROUTED, router.route(null, "file:///android_asset/www/index.html"));
+        assertEquals(SchemeRouter.NOT_ROUTED, router.route(null, "about:blank"));
+        assertEquals(SchemeRouter.NOT_ROUTED, router.route(null, "relative/page.html"));
+    }
+
+    @Test
+    public void routesRegisteredSchemes() {
+        assertEquals(SchemeRouter.NOT_ROUTED, router.route(null, "myapp://done"));
+        router.register("MyApp", false);
+        assertEquals(SchemeRouter.DELIVER, router.route(null, "myapp://done"));
+        router.register("myapp", true);
+        assertEquals(SchemeRouter.HANDLED, router.route(null, "myapp://done"));
+        router.register("tel", false);
+        assertEquals(SchemeRouter.DELIVER, router.route(null, "tel:5551212"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.inappbrowserbeta;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class UiTaskQueueTest {
+
+    private final EngineThread thread = new EngineThread();
+    private final ActionTimings timings = new ActionTimings();
+    private final UiTaskQueue queue = new UiTaskQueue(thread, timings);
+    private final ArrayList<String> ran = new ArrayList<String>();
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void runsABurstInOneMessage() throws Exception {
+        queue.post("open", task("a"));
+        queue.post(null, task("b"));
+        queue.post("close", task("c"));
+        assertEquals(3, queue.getDepth());
+        assertEquals(1, thread.drain());
+        assertEquals(Arrays.asList("a", "b", "c"), ran);
+        assertEquals(0, queue.getDepth());
+
+        JSONObject json = queue.toJSON();
+        assertEquals(1, json.getLong("messages"));
+        assertEquals(3, json.getJSONObject("latency").getLong("count"));
+        assertEquals(1, timings.toJSON().getJSONObject("open").getJSONObject("ui").getLong("count"));
+
+        queue.post(null, task("d"));
+        assertEquals(1, thread.drain());
+        assertEquals(2, queue.toJSON().getLong("messages"));
+    }
+
+    @Test
+    public void replacesPendingTasksWithTheSameKey() throws Exception {
+        Object key = new Object();
+        queue.post("show", key, task("show"));
+        queue.post(null, task("other"));
+        queue.post("hide", key, task("hide"));
+        thread.drain();
+        assertEquals(Arrays.asList("other", "hide"), ran);
+        assertEquals(1, queue.toJSON().getLong("superseded"));
+
+        // Only pending tasks are replaced
+        queue.post("show", key, task("show"));
+        thread.drain();
+        queue.post("hide", key, task("hide"));
+        thread.drain();
+        assertEquals(Arrays.asList("other", "hide", "show", "hide"), ran);
+    }
+
+    @Test
+    public void runsTasksPostedByTasks() {
+        queue.post(null, new Runnable() {
+            @Override
+            public void run() {
+                ran.add("outer");
+                queue.post(null, task("inner"));
+            }
+        });
+        assertEquals(1, thread.drain());
+        assertEquals(Arrays.asList("outer", "inner"), ran);
+    }
+
+    @Test
+    public void keepsGoingAfterATaskThrows() {
+        queue.post("open", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        queue.post(null, task("after"));
+        try {
+            thread.drain();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+        assertEquals(1, thread.drain());
+        assertEquals(Arrays.asList("after"), ran);
+
+        queue.post(null, task("later"));
+        assertEquals(1, thread.drain());
+        assertEquals(Arrays.asList("after", "later"), ran);
+    }
+
+    @Test
+    public void resetForgetsTheCounts() throws Exception {
+        queue.post(null, task("a"));
+        thread.drain();
+        queue.reset();
+        JSONObject json = queue.toJSON();
+        assertEquals(0, json.getLong("messages"));
+        assertEquals(0, json.getJSONObject("latency").getLong("count"));
+    }
+}
@@ -24,7 +24,24 @@ var channel = require('cordova/channel');
 var modulemapper = require('cordova/modulemapper');
 var urlutil = require('cordova/urlutil');
 
+var waitCounter = 0;
+var browserCounter = 0;
+
+// Every action but open carries the browser id last, so the native side can tell the browsers apart
+function startWait(iab, action, args, success, error) {
+    var id = 'wait' + (++waitCounter);
+    exec(success, error, "InAppBrowserBeta", action, args.concat([id, iab.id]));
+    return {
+        cancel: function () {
+            exec(null, null, "InAppBrowserBeta", "cancelWait", [id, iab.id]);
+        }
+    };
+}
+
 function InAppBrowserBeta() {
+   // A reload closes every native browser, but the close finishes after the new page can
+   // call open(), so ids stay unique across reloads rather than restarting the counter
+   this.id = 'iab' + new Date().getTime().toString(36) + '.' + (++browserCounter);
    this.channels = {
         'loadstart': channel.create('loadstart'),
         'loadstop' : channel.create('loadstop'),
@@ -32,30 +49,64 @@ function InAppBrowserBeta() {
         'loadedStatus' : channel.create('loadedStatus'),
         'notifyStatus' : channel.create('notifyStatus'),
         'exit' : channel.create('exit'),
-        'toolbarItemTapped' : channel.create('toolbarItemTapped')
+        'toolbarItemTapped' : channel.create('toolbarItemTapped'),
+        'customscheme' : channel.create('customscheme'),
+        'resourcetiming' : channel.create('resourcetiming'),
+        'rendererrecovered' : channel.create('rendererrecovered')
    };
+   // Let the native side skip events nobody is listening for
+   for (var type in this.channels) {
+        this.channels[type].onHasSubscribersChange = onHasSubscribersChange(this);
+   }
+}
+
+function onHasSubscribersChange(iab) {
+    return function () {
+        exec(null, null, "InAppBrowserBeta", this.numHandlers ? "subscribe" : "unsubscribe", [this.type, iab.id]);
+    };
 }
 
 InAppBrowserBeta.prototype = {
     _eventHandler: function (event) {
+        // batchevents=yes delivers several events at once
+        if (Array.isArray(event)) {
+            for (var i = 0; i < event.length; i++) {
+                this._eventHandler(event[i]);
+            }
+            return;
+        }
         if (event.type in this.channels) {
             this.channels[event.type].fire(event);
         }
     },
     close: function (eventname) {
-        exec(null, null, "InAppBrowserBeta", "close", []);
+        exec(null, null, "InAppBrowserBeta", "close", [this.id]);
     },
     show: function (eventname) {
-        exec(null, null, "InAppBrowserBeta", "show", []);
+        exec(null, null, "InAppBrowserBeta", "show", [this.id]);
     },
     hide: function (eventname) {
-        exec(null, null, "InAppBrowserBeta", "hide", []);
+        exec(null, null, "InAppBrowserBeta", "hide", [this.id]);
+    },
+    selectTab: function (index) {
+        exec(null, null, "InAppBrowserBeta", "selectTab", [index, this.id]);
     },
     loadedStatus: function (eventname) {
-        exec(null, null, "InAppBrowserBeta", "loadedStatus", []);
+        exec(null, null, "InAppBrowserBeta", "loadedStatus", [this.id]);
+    },
+    notifyStatus: function (options) {
+        var minInterval = options && typeof options.minInterval === 'number' ? options.minInterval : null;
+        exec(null, null, "InAppBrowserBeta", "notifyStatus", [minInterval, this.id]);
     },
-    notifyStatus: function (eventname) {
-        exec(null, null, "InAppBrowserBeta", "notifyStatus", []);
+    waitForSelector: function (selector, options, success, error) {
+        options = options || {};
+        var timeout = typeof options.timeout === 'number' ? options.timeout : null;
+        return startWait(this, "waitForSelector", [selector, options.attribute || null, timeout], success, error);
+    },
+    waitForCondition: function (expression, options, success, error) {
+        options = options || {};
+        var timeout = typeof options.timeout === 'number' ? options.timeout : null;
+        return startWait(this, "waitForCondition", [expression, timeout], success, error);
     },
     addEventListener: function (eventname,f) {
         if (eventname in this.channels) {
@@ -70,9 +121,9 @@ InAppBrowserBeta.prototype = {
 
     executeScript: function(injectDetails, cb) {
         if (injectDetails.code) {
-            exec(cb, null, "InAppBrowserBeta", "injectScriptCode", [injectDetails.code, !!cb]);
+            exec(cb, null, "InAppBrowserBeta", "injectScriptCode", [injectDetails.code, !!cb, this.id]);
         } else if (injectDetails.file) {
-            exec(cb, null, "InAppBrowserBeta", "injectScriptFile", [injectDetails.file, !!cb]);
+            exec(cb, null, "InAppBrowserBeta", "injectScriptFile", [injectDetails.file, !!cb, this.id]);
         } else {
             throw new Error('executeScript requires exactly one of code or file to be specified (beta)');
         }
@@ -80,16 +131,16 @@ InAppBrowserBeta.prototype = {
 
     insertCSS: function(injectDetails, cb) {
         if (injectDetails.code) {
-            exec(cb, null, "InAppBrowserBeta", "injectStyleCode", [injectDetails.code, !!cb]);
+            exec(cb, null, "InAppBrowserBeta", "injectStyleCode", [injectDetails.code, !!cb, this.id]);
         } else if (injectDetails.file) {
-            exec(cb, null, "InAppBrowserBeta", "injectStyleFile", [injectDetails.file, !!cb]);
+            exec(cb, null, "InAppBrowserBeta", "injectStyleFile", [injectDetails.file, !!cb, this.id]);
         } else {
             throw new Error('insertCSS requires exactly one of code or file to be specified (beta)');
         }
     }
 };
 
-module.exports = function(strUrl, strWindowName, strWindowFeatures) {
+var openBeta = module.exports = function(strUrl, strWindowName, strWindowFeatures, options) {
     // Don't catch calls that write to existing frames (e.g. named iframes).
     if (window.frames && window.frames[strWindowName]) {
         var origOpenFunc = modulemapper.getOriginalSymbol(window, 'open');
@@ -103,8 +154,39 @@ module.exports = function(strUrl, strWindowName, strWindowFeatures) {
     };
 
     strWindowFeatures = strWindowFeatures || "";
+    var tabs = options && options.tabs ? options.tabs : null;
 
-    exec(cb, cb, "InAppBrowserBeta", "open", [strUrl, strWindowName, strWindowFeatures]);
+    exec(cb, cb, "InAppBrowserBeta", "open", [strUrl, strWindowName, strWindowFeatures, iab.id, tabs]);
     return iab;
 };
 
+// Route links with an app-specific scheme, in every InAppBrowser window. With external set the
+// links are handed to whichever app takes them, otherwise they fire a customscheme event.
+openBeta.registerScheme = function(scheme, options) {
+    exec(null, null, "InAppBrowserBeta", "registerScheme", [scheme, !!(options && options.external)]);
+};
+
+// Page load latencies per host, in milliseconds, see the docs. With reset set the numbers start over.
+openBeta.getMetrics = function(success, error, options) {
+    exec(success, error, "InAppBrowserBeta", "getMetrics", [!!(options && options.reset)]);
+};
+
+// Time spent per action on the plugin's worker thread and on the UI thread, in microseconds.
+// With reset set the numbers start over.
+openBeta.getThreadMetrics = function(success, error, options) {
+    exec(success, error, "InAppBrowserBeta", "getThreadMetrics", [!!(options && options.reset)]);
+};
+
+// Fetch pages ahead of their window.open, see the docs. success gets { fetched, failed, cancelled }.
+openBeta.prefetch = function(urls, options, success, error) {
+    options = options || {};
+    exec(success, error, "InAppBrowserBeta", "prefetch", [urls,
+        typeof options.concurrency === 'number' ? options.concurrency : null,
+        typeof options.maxAge === 'number' ? options.maxAge : null,
+        options.subresources !== false]);
+};
+
+// Diagnostics events of the native side, only in debug builds. Replaces the previous listener.
+openBeta.addDiagnosticsListener = function(callback) {
+    exec(callback, null, "InAppBrowserBeta", "diagnostics", []);
+};